@@ -0,0 +1,104 @@
+package Huffman;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Generated inputs of the benchmarks, the same seed always gives the same bytes
+ * so results of different runs and different commits can be compared
+ */
+public enum BenchmarkCorpus {
+
+    // every byte value equally likely, codes of 8 bits
+    UNIFORM {
+        @Override
+        void fill(byte[] bytes, Random random) {
+            random.nextBytes(bytes);
+        }
+    },
+
+    // words of lower case letters, with the frequencies of words in english text
+    TEXT {
+        @Override
+        void fill(byte[] bytes, Random random) {
+            String[] words = new String[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                char[] word = new char[1 + random.nextInt(4) + random.nextInt(5)];
+                for (int c = 0; c < word.length; c++)
+                    word[c] = LETTERS.charAt(Math.min(LETTERS.length() - 1, (int) (-Math.log(1 - random.nextDouble()) * 6)));
+                words[i] = new String(word);
+            }
+
+            // the i-th word is 1 / (i + 1) as likely as the first one
+            int position = 0;
+            while (position < bytes.length) {
+                String word = words[(int) Math.min(WORDS - 1, Math.exp(random.nextDouble() * Math.log(WORDS + 1)) - 1)];
+                for (int c = 0; c < word.length() && position < bytes.length; c++)
+                    bytes[position++] = (byte) word.charAt(c);
+                if (position < bytes.length)
+                    bytes[position++] = (byte) (random.nextInt(12) == 0 ? '\n' : ' ');
+            }
+        }
+    },
+
+    // every byte value half as likely as the one before, codes up to 30 bits and more
+    SKEWED {
+        @Override
+        void fill(byte[] bytes, Random random) {
+            for (int i = 0; i < bytes.length; i++)
+                bytes[i] = (byte) Math.min(255, Long.numberOfTrailingZeros(random.nextLong() | Long.MIN_VALUE));
+        }
+    },
+
+    // one byte value only, codes of 1 bit
+    SINGLE {
+        @Override
+        void fill(byte[] bytes, Random random) {
+            Arrays.fill(bytes, (byte) 'a');
+        }
+    },
+
+    // TEXT compressed with deflate, almost uniform like any compressed file
+    COMPRESSED {
+        @Override
+        void fill(byte[] bytes, Random random) {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length);
+            byte[] text = new byte[64 * 1024];
+            byte[] buffer = new byte[64 * 1024];
+            while (compressed.size() < bytes.length) {
+                TEXT.fill(text, random);
+                deflater.setInput(text);
+                int numberOfBytes;
+                while ((numberOfBytes = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH)) > 0)
+                    compressed.write(buffer, 0, numberOfBytes);
+            }
+            deflater.end();
+            System.arraycopy(compressed.toByteArray(), 0, bytes, 0, bytes.length);
+        }
+    };
+
+    // number of different words of TEXT
+    private static final int WORDS = 5000;
+
+    // letters of TEXT, the first ones are the most frequent
+    private static final String LETTERS = "etaoinshrdlcumwfgypbvkjxqz";
+
+    // seed of every corpus
+    private static final long SEED = 0x48554621L;
+
+
+    /**
+     * @param size number of bytes
+     * @return the bytes of this corpus
+     */
+    public byte[] generate(int size) {
+        byte[] bytes = new byte[size];
+        fill(bytes, new Random(SEED + ordinal()));
+        return bytes;
+    }
+
+    abstract void fill(byte[] bytes, Random random);
+}
@@ -0,0 +1,200 @@
+package Huffman;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks with the GC profiler, and prints MB/s of the input and bytes allocated per operation.
+ *
+ * Usage: java -jar benchmarks.jar [--save file] [--baseline file] [--threshold percent] [JMH options]
+ * --save writes the results to a file, --baseline compares the results to a saved file and exits with 1
+ * if a benchmark is slower by more than the threshold (5% when not given).
+ * JMH options select and tune the benchmarks, e.g. "EncodeBenchmark -p corpus=TEXT -p size=1048576"
+ */
+public class BenchmarkRunner {
+
+    // a benchmark slower than the baseline by more than this percent is a regression
+    private static final double DEFAULT_THRESHOLD = 5;
+
+    public static void main(String[] args) throws Exception {
+        String save = null;
+        String baseline = null;
+        double threshold = DEFAULT_THRESHOLD;
+
+        // our options first, the rest is given to JMH
+        List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--save") && i + 1 < args.length)
+                save = args[++i];
+            else if (args[i].equals("--baseline") && i + 1 < args.length)
+                baseline = args[++i];
+            else if (args[i].equals("--threshold") && i + 1 < args.length)
+                threshold = Double.parseDouble(args[++i]);
+            else
+                jmhArgs.add(args[i]);
+        }
+
+        CommandLineOptions commandLine = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+        if (commandLine.shouldHelp()) {
+            System.out.println("Usage: java -jar benchmarks.jar [--save file] [--baseline file] [--threshold percent] [JMH options]");
+            System.out.println();
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        Map<String, Score> scores = scores(results);
+        print(scores);
+
+        if (save != null)
+            save(scores, save);
+
+        if (baseline != null && compare(scores, load(baseline), threshold) > 0)
+            System.exit(1);
+    }
+
+
+    /**
+     * @return the score of every benchmark by benchmark name and parameters
+     */
+    private static Map<String, Score> scores(Collection<RunResult> results) {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            Result primary = result.getPrimaryResult();
+
+            // benchmarks over an input of a given size are scored in MB/s of the input
+            double score = primary.getScore();
+            String unit = primary.getScoreUnit();
+            String size = params.getParam("size");
+            if (size != null && unit.equals("ops/s")) {
+                score *= Long.parseLong(size) / 1e6;
+                unit = "MB/s";
+            }
+
+            double allocated = Double.NaN;
+            for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+                if (secondary.getKey().endsWith("gc.alloc.rate.norm"))
+                    allocated = secondary.getValue().getScore();
+            }
+
+            scores.put(label(params), new Score(score, unit, allocated));
+        }
+        return scores;
+    }
+
+    /**
+     * @return the benchmark name without the package, and its parameters
+     */
+    private static String label(BenchmarkParams params) {
+        StringBuilder label = new StringBuilder(params.getBenchmark().substring(params.getBenchmark().indexOf('.') + 1));
+        for (String key : params.getParamsKeys())
+            label.append(' ').append(key).append('=').append(params.getParam(key));
+        return label.toString();
+    }
+
+    private static void print(Map<String, Score> scores) {
+        System.out.println();
+        System.out.printf("%-75s %16s %-6s %12s%n", "Benchmark", "Score", "Unit", "B/op");
+        for (Map.Entry<String, Score> entry : scores.entrySet()) {
+            Score score = entry.getValue();
+            System.out.printf("%-75s %16.2f %-6s %12.1f%n", entry.getKey(), score.value, score.unit, score.allocated);
+        }
+    }
+
+
+    /**
+     * write the scores, one benchmark a line: label, score, unit and bytes per operation separated by tabs
+     */
+    private static void save(Map<String, Score> scores, String file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Score> entry : scores.entrySet()) {
+                Score score = entry.getValue();
+                writer.println(entry.getKey() + '\t' + score.value + '\t' + score.unit + '\t' + score.allocated);
+            }
+        }
+        System.out.println("Saved " + scores.size() + " results to " + file);
+    }
+
+    private static Map<String, Score> load(String file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            if (fields.length == 4)
+                scores.put(fields[0], new Score(Double.parseDouble(fields[1]), fields[2], Double.parseDouble(fields[3])));
+        }
+        return scores;
+    }
+
+    /**
+     * print the change of every benchmark that is in the baseline
+     *
+     * @return number of regressions
+     */
+    private static int compare(Map<String, Score> scores, Map<String, Score> baseline, double threshold) {
+        System.out.println();
+        System.out.printf("%-75s %10s %10s%n", "Compared to baseline", "score", "B/op");
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : scores.entrySet()) {
+            Score score = entry.getValue();
+            Score base = baseline.get(entry.getKey());
+            if (base == null || !base.unit.equals(score.unit))
+                continue;
+
+            double change = 100 * (score.value - base.value) / base.value;
+            double allocatedChange = 100 * (score.allocated - base.allocated) / Math.max(1, base.allocated);
+            boolean regression = change < -threshold;
+            if (regression)
+                regressions++;
+
+            System.out.printf("%-75s %+9.1f%% %+9.1f%%%s%n", entry.getKey(), change, allocatedChange, regression ? "  REGRESSION" : "");
+        }
+
+        System.out.println(regressions + " regressions of more than " + threshold + "%");
+        return regressions;
+    }
+
+
+    /**
+     * the score of a benchmark: MB/s when it has a size, otherwise the unit of JMH, and the bytes allocated per operation
+     */
+    private static class Score {
+
+        final double value;
+        final String unit;
+        final double allocated;
+
+        Score(double value, String unit, double allocated) {
+            this.value = value;
+            this.unit = unit;
+            this.allocated = allocated;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package Huffman;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the code from the frequencies, and writing and reading its header.
+ * these do not depend on the size of the input, only on its frequencies, so they are scored in ops/s
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CodeState {
+
+        @Param({"UNIFORM", "TEXT", "SKEWED", "SINGLE", "COMPRESSED"})
+        public BenchmarkCorpus corpus;
+
+        // number of bytes of the sample the frequencies are counted from
+        private static final int SAMPLE_SIZE = 1024 * 1024;
+
+        // frequencies of the sample, their code and its header
+        long[] histogram;
+        HuffmanCanonicalCode code;
+        byte[] header;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            byte[] bytes = corpus.generate(SAMPLE_SIZE);
+            histogram = new long[256];
+            HuffmanHistogram.count(bytes, 0, bytes.length, histogram);
+            code = HuffmanCanonicalCode.fromHistogram(histogram);
+
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            code.write(new DataOutputStream(headerBytes));
+            header = headerBytes.toByteArray();
+        }
+    }
+
+
+    @Benchmark
+    public HuffmanTree buildTree(CodeState state) {
+        return HuffmanTree.build(state.histogram);
+    }
+
+    @Benchmark
+    public HuffmanCanonicalCode buildCanonicalCode(CodeState state) {
+        return HuffmanCanonicalCode.fromHistogram(state.histogram);
+    }
+
+    @Benchmark
+    public HuffmanCanonicalCode buildLimitedCode(CodeState state) {
+        return HuffmanCanonicalCode.fromHistogram(state.histogram, HuffmanDecodingTable.TABLE_BITS);
+    }
+
+    @Benchmark
+    public HuffmanDecodingTable buildDecodingTable(CodeState state) {
+        return new HuffmanDecodingTable(state.code.getCodes(), state.code.getLengths());
+    }
+
+    @Benchmark
+    public void writeHeader(CodeState state) throws IOException {
+        state.code.write(new DataOutputStream(new CorpusState.DiscardOutputStream()));
+    }
+
+    @Benchmark
+    public HuffmanCanonicalCode readHeader(CodeState state) throws IOException {
+        return HuffmanCanonicalCode.read(new DataInputStream(new ByteArrayInputStream(state.header)));
+    }
+}
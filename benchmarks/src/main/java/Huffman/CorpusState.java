@@ -0,0 +1,112 @@
+package Huffman;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A generated corpus in memory, and everything the benchmarks of one phase need from the phases before it:
+ * its frequencies, its code, its encoded content, its encoded block and its interleaved segments
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    // the generated input
+    @Param({"UNIFORM", "TEXT", "SKEWED", "SINGLE", "COMPRESSED"})
+    public BenchmarkCorpus corpus;
+
+    // number of bytes of the input, BenchmarkRunner gives MB/s from it
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    // size of the buffers of the bit writer
+    static final int SIZE = 8 * 1024;
+
+    // the bytes of the corpus
+    byte[] bytes;
+
+    // frequency of every byte value of the corpus
+    long[] histogram;
+
+    // the canonical code of the corpus and its decoding table
+    HuffmanCanonicalCode code;
+    HuffmanDecodingTable table;
+
+    // the content bits of the corpus, and their number
+    byte[] encoded;
+    long encodedBits;
+
+    // the corpus encoded as one block
+    HuffmanBlock block;
+
+    // the corpus in interleaved segments: the table of its code of at most 11 bits,
+    // the streams of every segment and where they start
+    int[] interleavedTable;
+    byte[][] segments;
+    int[][] segmentStarts;
+
+    // array the decoders write to
+    byte[] decoded;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bytes = corpus.generate(size);
+
+        histogram = new long[256];
+        HuffmanHistogram.count(bytes, 0, bytes.length, histogram);
+        code = HuffmanCanonicalCode.fromHistogram(histogram);
+        table = new HuffmanDecodingTable(code.getCodes(), code.getLengths());
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream(size);
+        HuffmanBitWriter writer = new HuffmanBitWriter(content, SIZE);
+        writer.write(bytes, 0, bytes.length, code.getCodes(), code.getLengths());
+        writer.flush();
+        encoded = content.toByteArray();
+        encodedBits = writer.getBitsWritten();
+
+        block = HuffmanBlock.encode(bytes, 0, bytes.length);
+        decoded = new byte[size];
+
+        HuffmanCanonicalCode limited = HuffmanCanonicalCode.fromHistogram(histogram, HuffmanInterleaved.MAX_CODE_LENGTH);
+        interleavedTable = new HuffmanDecodingTable(limited.getCodes(), limited.getLengths()).table;
+        int numberOfSegments = (size + HuffmanInterleaved.SEGMENT_SIZE - 1) / HuffmanInterleaved.SEGMENT_SIZE;
+        segments = new byte[numberOfSegments][];
+        segmentStarts = new int[numberOfSegments][HuffmanInterleaved.STREAMS + 1];
+        HuffmanInterleaved interleaved = new HuffmanInterleaved();
+        for (int i = 0; i < numberOfSegments; i++) {
+            int from = i * HuffmanInterleaved.SEGMENT_SIZE;
+            int length = Math.min(HuffmanInterleaved.SEGMENT_SIZE, size - from);
+            ByteArrayOutputStream segment = new ByteArrayOutputStream();
+            interleaved.writeSegment(Arrays.copyOfRange(bytes, from, from + length), length,
+                    limited.getCodes(), limited.getLengths(), new DataOutputStream(segment));
+            segments[i] = HuffmanInterleaved.readSegment(new DataInputStream(new ByteArrayInputStream(segment.toByteArray())),
+                    null, segmentStarts[i]);
+        }
+    }
+
+
+    /**
+     * stream that drops the bytes written to it, so only the encoding is measured
+     */
+    static class DiscardOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package Huffman;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the codes of the corpus, alone with a built decoding table, as 4 interleaved streams,
+ * and as a whole block with its header
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Benchmark
+    public byte[] readCodes(CorpusState state) throws IOException {
+        HuffmanBitReader reader = new HuffmanBitReader(state.encoded, 0, state.encoded.length, state.encodedBits);
+        state.table.decode(reader, state.decoded, 0, state.size);
+        return state.decoded;
+    }
+
+    @Benchmark
+    public byte[] readInterleaved(CorpusState state) throws IOException {
+        for (int i = 0; i < state.segments.length; i++) {
+            int from = i * HuffmanInterleaved.SEGMENT_SIZE;
+            int length = Math.min(HuffmanInterleaved.SEGMENT_SIZE, state.size - from);
+            HuffmanInterleaved.decodeSegment(state.interleavedTable, state.segments[i], state.segmentStarts[i],
+                    state.decoded, length);
+        }
+        return state.decoded;
+    }
+
+    @Benchmark
+    public byte[] decodeBlock(CorpusState state) throws IOException {
+        state.block.decode(state.decoded, 0);
+        return state.decoded;
+    }
+}
@@ -0,0 +1,36 @@
+package Huffman;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the codes of the corpus, alone with a known code, and as a whole block with its frequencies and header
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+    @Benchmark
+    public long writeCodes(CorpusState state) throws IOException {
+        HuffmanBitWriter writer = new HuffmanBitWriter(new CorpusState.DiscardOutputStream(), CorpusState.SIZE);
+        writer.write(state.bytes, 0, state.bytes.length, state.code.getCodes(), state.code.getLengths());
+        writer.flush();
+        return writer.getBitsWritten();
+    }
+
+    @Benchmark
+    public HuffmanBlock encodeBlock(CorpusState state) throws IOException {
+        return HuffmanBlock.encode(state.bytes, 0, state.bytes.length);
+    }
+}
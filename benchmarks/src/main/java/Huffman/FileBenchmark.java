@@ -0,0 +1,94 @@
+package Huffman;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding whole files in the canonical format, through streams and through mapped windows.
+ * the files are in the temporary directory, so the numbers include the file system
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FileState {
+
+        @Param({"TEXT", "UNIFORM"})
+        public BenchmarkCorpus corpus;
+
+        // number of bytes of the file, BenchmarkRunner gives MB/s from it
+        @Param({"16777216", "134217728"})
+        public int size;
+
+        // read and write the files through mapped windows
+        @Param({"false", "true"})
+        public boolean mapped;
+
+        // the corpus, the encoded file, and the files written by the benchmarks
+        File source;
+        File encoded;
+        File encodeOutput;
+        File decodeOutput;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            source = File.createTempFile("huffman-benchmark", ".bin");
+            encoded = new File(source.getPath() + ".huff");
+            encodeOutput = new File(source.getPath() + ".out.huff");
+            decodeOutput = new File(source.getPath() + ".out");
+
+            try (FileOutputStream outputStream = new FileOutputStream(source)) {
+                outputStream.write(corpus.generate(size));
+            }
+            new HuffmanEncoder(source, encoded).encode();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            source.delete();
+            encoded.delete();
+            encodeOutput.delete();
+            decodeOutput.delete();
+        }
+    }
+
+
+    @Benchmark
+    public long[] countFile(FileState state) throws IOException {
+        return HuffmanHistogram.count(state.source, state.mapped);
+    }
+
+    @Benchmark
+    public void encodeFile(FileState state) throws IOException {
+        HuffmanEncoder encoder = new HuffmanEncoder(state.source, state.encodeOutput);
+        encoder.setMemoryMapped(state.mapped);
+        encoder.encode();
+    }
+
+    @Benchmark
+    public void decodeFile(FileState state) throws Exception {
+        HuffmanDecoder decoder = new HuffmanDecoder(state.encoded, state.decodeOutput);
+        decoder.setMemoryMapped(state.mapped);
+        decoder.decode();
+    }
+}
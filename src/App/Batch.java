@@ -0,0 +1,385 @@
+package App;
+
+import Huffman.HuffmanCanonicalCode;
+import Huffman.HuffmanDecoder;
+import Huffman.HuffmanDictionary;
+import Huffman.HuffmanDictionaryCache;
+import Huffman.HuffmanEncoder;
+import Huffman.HuffmanMetricsListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Encodes or decodes many files on a fixed pool of threads, a file that fails does not stop the others,
+ * and the summary counts the files, the bytes read and written and the failures
+ */
+public class Batch {
+
+    // the extension of encoded files
+    private static final String EXTENSION = ".huff";
+
+    // decode .huff files, or encode files
+    private final boolean decode;
+
+    // size of the blocks the files are encoded in, 0 to encode every file with one code
+    private int blockSize = 0;
+
+    // encode in one pass with codes rebuilt from the running counts
+    private boolean adaptive = false;
+
+    // encode every byte with the code of the byte before it
+    private boolean contextModel = false;
+
+    // encode in segments of 4 interleaved streams
+    private boolean interleaved = false;
+
+    // read and write every file on threads of their own while it is coded
+    private boolean pipelined = false;
+
+    // the longest code allowed
+    private int maxCodeLength = HuffmanCanonicalCode.MAX_LENGTH;
+
+    // number of files coded at the same time
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    // given the metrics of every file, null for none
+    private HuffmanMetricsListener metricsListener;
+
+    // the dictionary every file is encoded with, null to encode every file with its own code
+    private HuffmanDictionary dictionary;
+
+    // the dictionaries of the files decoded, shared by the threads, null if there are none
+    private HuffmanDictionaryCache dictionaries;
+
+
+    /**
+     * @param decode true to decode .huff files, false to encode files
+     */
+    public Batch(boolean decode) {
+        this.decode = decode;
+    }
+
+    /**
+     * @param blockSize size of the blocks every file is encoded in, 0 to encode every file with one code
+     */
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @param adaptive true to encode in the adaptive format
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @param contextModel true to encode in the order-1 context format
+     */
+    public void setContextModel(boolean contextModel) {
+        this.contextModel = contextModel;
+    }
+
+    /**
+     * @param interleaved true to encode in the interleaved format
+     */
+    public void setInterleaved(boolean interleaved) {
+        this.interleaved = interleaved;
+    }
+
+    /**
+     * @param pipelined true to read ahead and write behind every file on threads of their own
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * @param maxCodeLength the longest code allowed, from 8 to 64
+     */
+    public void setMaxCodeLength(int maxCodeLength) {
+        if (maxCodeLength < HuffmanCanonicalCode.MIN_LENGTH_LIMIT || maxCodeLength > HuffmanCanonicalCode.MAX_LENGTH)
+            throw new IllegalArgumentException("maxCodeLength must be between " + HuffmanCanonicalCode.MIN_LENGTH_LIMIT
+                    + " and " + HuffmanCanonicalCode.MAX_LENGTH);
+        this.maxCodeLength = maxCodeLength;
+    }
+
+    /**
+     * @param threads number of files coded at the same time
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+        this.threads = threads;
+    }
+
+
+    /**
+     * @param metricsListener given the metrics of every file coded, from the threads of the pool
+     */
+    public void setMetricsListener(HuffmanMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+
+    /**
+     * @param dictionary the dictionary every file is encoded with, null to encode every file with its own code
+     */
+    public void setDictionary(HuffmanDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @param dictionaries the dictionaries of the files decoded, null if there are none
+     */
+    public void setDictionaries(HuffmanDictionaryCache dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+
+    /**
+     * the files to code from the names given on the command line: a file, a directory whose files are all taken,
+     * searching its sub directories, or @name of a file that lists names, one a line.
+     * files in directories are taken when they end with .huff to decode, and when they don't to encode
+     *
+     * @param names  names of files, directories and lists
+     * @param decode true to take the .huff files of directories
+     * @return the files, in order of the names, and of path in every directory
+     * @throws IOException if a directory or a list can not be read
+     */
+    public static List<File> collect(List<String> names, boolean decode) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String name : names) {
+
+            // a list of names, which may be directories too
+            if (name.startsWith("@")) {
+                List<String> listed = Files.readAllLines(Paths.get(name.substring(1)), StandardCharsets.UTF_8).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty())
+                        .collect(Collectors.toList());
+                files.addAll(collect(listed, decode));
+                continue;
+            }
+
+            File file = new File(name);
+            if (!file.isDirectory()) {
+                files.add(file);
+                continue;
+            }
+
+            try (Stream<Path> paths = Files.walk(file.toPath())) {
+                paths.filter(Files::isRegularFile)
+                        .filter(path -> path.getFileName().toString().endsWith(EXTENSION) == decode)
+                        .sorted()
+                        .forEach(path -> files.add(path.toFile()));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * code every file on the pool, every encoded file is written next to its file with .huff added,
+     * every decoded file next to its .huff file without .huff
+     *
+     * @param files the files to encode or decode
+     * @return Summary of all the files
+     * @throws InterruptedException if interrupted while waiting for the files
+     */
+    public Summary run(List<File> files) throws InterruptedException {
+        long start = System.nanoTime();
+
+        // a single file may use all the threads itself, many files get one each from the pool
+        int threadsPerFile = files.size() == 1 ? threads : 1;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Summary summary = new Summary(decode);
+        try {
+            List<Future<Result>> results = new ArrayList<>(files.size());
+            for (File file : files)
+                results.add(pool.submit(() -> code(file, threadsPerFile)));
+
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    summary.add(results.get(i).get());
+                } catch (ExecutionException e) {
+                    // code() catches everything it throws, a failure here still counts against its file
+                    summary.add(new Result(files.get(i), files.get(i).length(), 0, e.getCause()));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        summary.nanoseconds = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * encode or decode one file
+     *
+     * @return Result, with the exception or error if it failed
+     */
+    private Result code(File file, int threads) {
+        File outputFile;
+        File temporary = null;
+        try {
+            if (!file.isFile())
+                throw new IOException("Error:No such file.");
+
+            if (decode) {
+                String name = file.getName();
+                if (!name.endsWith(EXTENSION))
+                    throw new IOException("Error:Not a " + EXTENSION + " file.");
+
+                // the destination file
+                outputFile = new File(file.getAbsoluteFile().getParentFile(), name.substring(0, name.length() - EXTENSION.length()));
+                temporary = temporaryFile(outputFile);
+
+                HuffmanDecoder decoder = new HuffmanDecoder(file, temporary);
+                decoder.setThreads(threads);
+                decoder.setPipelined(pipelined);
+                decoder.setMetricsListener(metricsListener);
+                decoder.setDictionaries(dictionaries);
+                decoder.decode();
+            } else {
+                // the destination file
+                outputFile = new File(file.getAbsolutePath() + EXTENSION);
+                temporary = temporaryFile(outputFile);
+
+                HuffmanEncoder encoder = new HuffmanEncoder(file, temporary);
+                encoder.setBlockSize(blockSize);
+                encoder.setAdaptive(adaptive);
+                encoder.setContextModel(contextModel);
+                encoder.setInterleaved(interleaved);
+                encoder.setMaxCodeLength(maxCodeLength);
+                encoder.setThreads(threads);
+                encoder.setPipelined(pipelined);
+                encoder.setMetricsListener(metricsListener);
+                encoder.setDictionary(dictionary);
+                encoder.encode();
+            }
+
+            // the destination is replaced only by a whole file
+            Files.move(temporary.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Result(file, file.length(), outputFile.length(), null);
+
+        } catch (Throwable e) {
+
+            // an error such as running out of memory fails only this file,
+            // and does not leave a part of a file behind, the destination is as it was
+            if (temporary != null)
+                temporary.delete();
+            return new Result(file, file.length(), 0, e);
+        }
+    }
+
+    /**
+     * create an empty file to code to, in the directory of the destination so it is renamed to it without a copy
+     *
+     * @param outputFile the destination file
+     * @return the temporary file
+     * @throws IOException I/O
+     */
+    private static File temporaryFile(File outputFile) throws IOException {
+        return File.createTempFile("." + outputFile.getName() + ".", ".tmp", outputFile.getAbsoluteFile().getParentFile());
+    }
+
+
+    /**
+     * what coding one file did
+     */
+    private static class Result {
+
+        // the file read, null if unknown
+        final File file;
+
+        // number of bytes read and written
+        final long bytesIn;
+        final long bytesOut;
+
+        // why the file failed, null if it did not
+        final Throwable error;
+
+        Result(File file, long bytesIn, long bytesOut, Throwable error) {
+            this.file = file;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.error = error;
+        }
+    }
+
+    /**
+     * the totals of a batch
+     */
+    public static class Summary {
+
+        // decoded, or encoded
+        private final boolean decode;
+
+        // number of files coded, and of files that failed
+        private int files = 0;
+        private int failures = 0;
+
+        // bytes read from and written to the files coded
+        private long bytesIn = 0;
+        private long bytesOut = 0;
+
+        // the files that failed, with the reason
+        private final List<String> failed = new ArrayList<>();
+
+        // time taken by the whole batch
+        private long nanoseconds;
+
+        private Summary(boolean decode) {
+            this.decode = decode;
+        }
+
+        private void add(Result result) {
+            if (result.error != null) {
+                failures++;
+                failed.add((result.file == null ? "?" : result.file.getPath()) + ": " + result.error);
+                return;
+            }
+            files++;
+            bytesIn += result.bytesIn;
+            bytesOut += result.bytesOut;
+        }
+
+        /**
+         * @return number of files that failed
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * print the failed files, then the totals
+         *
+         * @param out PrintStream
+         */
+        public void print(PrintStream out) {
+            for (String failure : failed)
+                out.println("Failed: " + failure);
+
+            double seconds = nanoseconds / 1e9;
+            out.println((decode ? "Decoded " : "Encoded ") + files + " files, " + failures + " failed");
+            out.printf("%d bytes in, %d bytes out (%.1f%%)%n", bytesIn, bytesOut, bytesIn == 0 ? 0 : 100.0 * bytesOut / bytesIn);
+            out.printf("%.2f s, %.1f MB/s%n", seconds, seconds == 0 ? 0 : bytesIn / 1e6 / seconds);
+        }
+    }
+}
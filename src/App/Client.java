@@ -0,0 +1,169 @@
+package App;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The client of Server: a file is sent to the server on the loopback interface and the answer is written
+ * next to it, as -e and -d would write it, so a script gets the same files without starting a JVM for each one.
+ * the file is sent by another thread while the answer is read, as the server answers a decode before it has all of it
+ *
+ * @see Server
+ */
+public class Client {
+
+    // the extension of encoded files
+    private static final String EXTENSION = ".huff";
+
+    // port of the server
+    private final int port;
+
+
+    /**
+     * @param port port of the server on the loopback interface
+     */
+    public Client(int port) {
+        this.port = port;
+    }
+
+
+    /**
+     * encode a file to the file with .huff added, or decode a .huff file to the file without it
+     *
+     * @param file   the file to code
+     * @param decode true to decode, false to encode
+     * @return the file written
+     * @throws IOException I/O, or the error of the server
+     */
+    public File code(File file, boolean decode) throws IOException {
+        File outputFile;
+        if (decode) {
+            String name = file.getName();
+            if (!name.endsWith(EXTENSION))
+                throw new IOException("Error:Not a " + EXTENSION + " file.");
+            outputFile = new File(file.getAbsoluteFile().getParentFile(), name.substring(0, name.length() - EXTENSION.length()));
+        } else {
+            outputFile = new File(file.getAbsolutePath() + EXTENSION);
+        }
+
+        boolean existed = outputFile.exists();
+        try (InputStream message = new FileInputStream(file);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile, false), Server.CHUNK_SIZE)) {
+            request(decode ? Server.DECODE : Server.ENCODE, message, file.length(), out);
+        } catch (IOException e) {
+            // do not leave a part of a file behind
+            if (!existed)
+                outputFile.delete();
+            throw e;
+        }
+        return outputFile;
+    }
+
+    /**
+     * @return the totals of the server
+     * @throws IOException I/O
+     */
+    public String stats() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        request(Server.STATS, null, 0, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * send a request and write the chunks of the answer, the request is sent by another thread
+     * while the answer is read
+     *
+     * @param op      the op of the request
+     * @param message the bytes to code, null for none
+     * @param length  number of bytes of message
+     * @param out     stream the answer is written to
+     * @throws IOException I/O, or the error of the server
+     */
+    private void request(int op, InputStream message, long length, OutputStream out) throws IOException {
+        IOException[] sendError = new IOException[1];
+        Thread sender = null;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataInputStream answer = new DataInputStream(new BufferedInputStream(socket.getInputStream(), Server.CHUNK_SIZE));
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Server.CHUNK_SIZE));
+
+            sender = new Thread(() -> {
+                try {
+                    request.writeByte(op);
+                    if (message != null) {
+                        request.writeLong(length);
+                        byte[] buffer = new byte[Server.CHUNK_SIZE];
+                        long unsent = length;
+                        while (unsent > 0) {
+                            int count = message.read(buffer, 0, (int) Math.min(buffer.length, unsent));
+                            if (count < 0)
+                                throw new IOException("Error:File changed while it was sent.");
+                            request.write(buffer, 0, count);
+                            unsent -= count;
+                        }
+                    }
+                    request.flush();
+                } catch (IOException e) {
+                    // a server that failed, or is busy, answers and closes without reading the rest, its answer tells why
+                    sendError[0] = e;
+                }
+            }, "huffman-client-sender");
+            sender.setDaemon(true);
+            sender.start();
+
+            readAnswer(answer, out);
+        } finally {
+            // the socket is closed by now, which stops a sender still writing
+            if (sender != null)
+                join(sender);
+        }
+
+        // the server answered all of the request, so all of it was sent
+        if (sendError[0] != null)
+            throw sendError[0];
+    }
+
+    /**
+     * write the chunks of the answer until its end
+     *
+     * @throws IOException I/O, or the error of the server
+     */
+    private static void readAnswer(DataInputStream answer, OutputStream out) throws IOException {
+        byte[] chunk = new byte[Server.CHUNK_SIZE];
+        while (true) {
+            int length = answer.readInt();
+            if (length == Server.END)
+                return;
+            if (length == Server.ERROR)
+                throw new IOException(answer.readUTF());
+            if (length < 0 || length > Server.CHUNK_SIZE)
+                throw new IOException("Error:Invalid answer from the server.");
+            answer.readFully(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * wait for a thread to end
+     */
+    private static void join(Thread thread) throws IOException {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Error:Interrupted.", e);
+        }
+    }
+}
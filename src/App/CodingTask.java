@@ -0,0 +1,56 @@
+package App;
+
+import Huffman.HuffmanProgressListener;
+import javafx.concurrent.Task;
+
+import java.io.File;
+
+/**
+ * Task that encodes or decodes a file off the JavaFX thread, the progress of the coding is shown as the fraction
+ * of the file done, and the message tells the megabytes done, the throughput and the time left.
+ * cancelling it with interruption stops the coding and deletes the part of the file written
+ */
+abstract class CodingTask extends Task<File> implements HuffmanProgressListener {
+
+    // nanoseconds between two messages, the progress itself is coalesced by the Task
+    private static final long MESSAGE_INTERVAL = 100_000_000L;
+
+    // System.nanoTime() when the coding started
+    private volatile long start;
+
+    // System.nanoTime() of the last message, blocks may report from several threads
+    private volatile long lastMessage;
+
+
+    @Override
+    protected final File call() throws Exception {
+        start = System.nanoTime();
+        lastMessage = start;
+        updateMessage("Starting...");
+        return code();
+    }
+
+    /**
+     * encode or decode the file, with this as the progress listener
+     *
+     * @return the file written
+     * @throws Exception
+     */
+    protected abstract File code() throws Exception;
+
+
+    @Override
+    public void progress(long bytesDone, long bytesTotal) {
+        updateProgress(bytesDone, bytesTotal);
+
+        long now = System.nanoTime();
+        if (now - lastMessage < MESSAGE_INTERVAL && bytesDone < bytesTotal)
+            return;
+        lastMessage = now;
+
+        double seconds = (now - start) / 1e9;
+        double rate = seconds == 0 ? 0 : bytesDone / seconds;
+        long left = rate == 0 ? 0 : Math.round((bytesTotal - bytesDone) / rate);
+        updateMessage(String.format("%.1f of %.1f MB, %.1f MB/s, %d s left", bytesDone / 1e6, bytesTotal / 1e6, rate / 1e6, left));
+    }
+}
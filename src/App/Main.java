@@ -1,111 +1,583 @@
 package App;
 
+import Huffman.HuffmanAdaptiveCoder;
+import Huffman.HuffmanArchive;
+import Huffman.HuffmanCanonicalCode;
 import Huffman.HuffmanDecoder;
+import Huffman.HuffmanDictionary;
+import Huffman.HuffmanDictionaryCache;
 import Huffman.HuffmanEncoder;
+import Huffman.HuffmanHistogram;
+import Huffman.HuffmanOutputStream;
+import Huffman.HuffmanSearch;
+import Huffman.HuffmanSeekableFile;
+import Huffman.HuffmanStats;
 import com.sun.javafx.binding.StringFormatter;
 import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
 
 public class Main {
 
+    // size of the blocks of the -b option
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    // size of the standard input and output buffers
+    private static final int PIPE_BUFFER = 64 * 1024;
+
+    // number of dictionaries kept in memory while decoding
+    private static final int DICTIONARY_CACHE = 16;
+
     public static void main(String[] args) {
-        if (args.length > 0) {
-            if (args[0].equals("-e")) {
-                for (int i = 1; i < args.length; i++) {
-                    try {
-                        File file = new File(args[i]);
 
-                        // the destination file
-                        File outputFile = new File(file.getAbsolutePath() + ".huff");
+        // --stats first prints the phase timings of all the files, and serves them through JMX while coding
+        boolean stats = args.length > 0 && args[0].equals("--stats");
+        if (stats)
+            args = Arrays.copyOfRange(args, 1, args.length);
 
-                        HuffmanEncoder encoder = new HuffmanEncoder(file, outputFile);
-                        encoder.encode();
+        // --pipeline reads and writes every file on threads of their own while it is coded
+        boolean pipelined = args.length > 0 && args[0].equals("--pipeline");
+        if (pipelined)
+            args = Arrays.copyOfRange(args, 1, args.length);
+
+        // "-" as the file name reads standard input and writes standard output
+        if (args.length == 2 && args[1].equals("-")) {
+            try {
+                pipe(args[0]);
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
 
+        if (args.length > 0) {
+            if (args[0].equals("-e") || args[0].equals("-b") || args[0].equals("-a") || args[0].equals("-o") || args[0].equals("-i")
+                    || args[0].equals("-d")) {
+                System.exit(batch(args, stats, pipelined));
+            } else if (args[0].equals("-r") && args.length == 4) {
+                try {
+                    readRange(Long.parseLong(args[1]), Integer.parseInt(args[2]), new File(args[3]));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+            } else if (args[0].equals("-s") && args.length > 2) {
+                System.exit(search(args));
+            } else if (args[0].equals("-S") && (args.length == 2 || args.length == 4)) {
+                System.exit(serve(args));
+            } else if (args[0].equals("-C") && args.length > 2) {
+                System.exit(client(args));
+            } else if ((args[0].equals("-A") || args[0].equals("-L") || args[0].equals("-X")) && args.length > 1) {
+                System.exit(archive(args));
+            } else if (args[0].equals("-t") && args.length > 2) {
+                System.exit(train(args));
+            } else if (args[0].equals("-c")) {
+                for (int i = 1; i < args.length; i++) {
+                    try {
+                        reportLengthLimits(new File(args[i]));
                     } catch (Exception e) {
                         e.printStackTrace();
                         System.out.println(e);
                     }
                 }
-            } else if (args[0].equals("-d")) {
-                for (int i = 1; i < args.length; i++) {
-                    if (args[i].endsWith(".huff"))
-                        try {
-                            File file = new File(args[i]);
-
-                            // the destination file
-                            File outputFile = new File(file.getParent() + "/" + file.getName().replace(".huff", ""));
-
-                            HuffmanDecoder decoder = new HuffmanDecoder(file, outputFile);
-                            decoder.decode();
-
-                            System.out.println();
-                            System.out.println();
-
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            System.out.println(e);
-                        }
-                }
             }
 
         } else {
-            System.out.println("Usage: java App.Main [-e|-d] [file names to encode/decode]");
+            System.out.println("Usage: java App.Main [--stats] [--pipeline] [-e|-b|-a|-o|-i|-d] [-l n] [-j n] [-D dictionary] [files, directories or @lists to encode/decode]");
+            System.out.println("       java App.Main [-b|-a|-d] -   (standard input to standard output)");
+            System.out.println("       java App.Main -t directory [-l n] [sample files, directories or @lists]");
+            System.out.println("       java App.Main -r offset length file.huff   (decoded bytes of a -b file to standard output)");
+            System.out.println("       java App.Main -A|-L|-X archive.huff [files, directories or @lists, or entry names]");
+            System.out.println("       java App.Main -s pattern [files, directories or @lists of .huff files]   (offsets of the pattern in the decoded bytes)");
+            System.out.println("       java App.Main -S port [-j n]   (serve -e and -d on the loopback interface)");
+            System.out.println("       java App.Main -C port -e|-d|-s [files, directories or @lists]   (code the files on the server)");
             System.out.println("-e: encode");
+            System.out.println("-b: encode in 1 MB blocks with their own codes, on all cores");
+            System.out.println("-a: encode in one pass with adaptive codes");
+            System.out.println("-o: encode every byte with the code of the byte before it, smaller for text");
+            System.out.println("-i: encode in 4 interleaved streams with codes of at most 11 bits, faster to decode large files");
             System.out.println("-d: decode");
+            System.out.println("-l n: no code longer than n bits, from 8 to 64");
+            System.out.println("-j n: code n files at the same time, the number of cores when not given");
+            System.out.println("-D: with -e the " + HuffmanDictionary.EXTENSION + " file to encode with, with -d the directory of the dictionaries");
+            System.out.println("-A: add the files to the archive, the small ones share one code, it is made if it does not exist");
+            System.out.println("-L: list the entries of the archive");
+            System.out.println("-X: extract the named entries of the archive, or all of them, under the current directory");
+            System.out.println("-S: serve requests on the port, n at the same time, the number of cores when not given");
+            System.out.println("-C: send the files to the server on the port, -s prints the stats of the server");
+            System.out.println("-t: train a dictionary on the samples and write it to the directory");
+            System.out.println("directories are searched for files, and @list names a file that lists a name a line");
+            System.out.println("--stats: print the time of every phase, and register the " + HuffmanStats.OBJECT_NAME + " MBean");
+            System.out.println("--pipeline: read ahead and write behind on their own threads, so the disk and the coding overlap");
+            System.out.println("-c: compare the size of the codes of every length limit to the huffman code");
         }
     }
 
+    /**
+     * encode or decode the files, directories and lists of the command line on a pool of threads
+     *
+     * @param args      the option, then -l, -j and -D, then the names
+     * @param stats     true to add up the metrics of the files in the HuffmanStats MBean, and print them
+     * @param pipelined true to read and write every file on threads of their own
+     * @return the exit code, 1 if any file failed
+     */
+    private static int batch(String[] args, boolean stats, boolean pipelined) {
+        Batch batch = new Batch(args[0].equals("-d"));
+        batch.setPipelined(pipelined);
 
-    public void encode(ActionEvent actionEvent) {
+        // encode independent blocks on all cores
+        if (args[0].equals("-b"))
+            batch.setBlockSize(BLOCK_SIZE);
 
-        try {
-            FileChooser fileChooser = new FileChooser();
+        // encode in one pass, with codes rebuilt from the running counts
+        if (args[0].equals("-a"))
+            batch.setAdaptive(true);
 
-            File file = fileChooser.showOpenDialog(((Button) actionEvent.getSource()).getParent().getScene().getWindow());
-            if (file != null) {
-                File out = new File(file.getAbsoluteFile() + ".huff");
-                HuffmanEncoder encoder = new HuffmanEncoder(file, out);
-                encoder.encode();
+        // encode with codes of the previous byte contexts
+        if (args[0].equals("-o"))
+            batch.setContextModel(true);
 
-                String ratio = StringFormatter.format("%.6f",((float)(file.length() - out.length()) * 100 / file.length())).get();
-                String s = "out:" + file.getAbsolutePath() + ".huff\nRatio:" + ratio + "%";
+        // encode in interleaved streams
+        if (args[0].equals("-i"))
+            batch.setInterleaved(true);
 
-                Alert alert = new Alert(Alert.AlertType.CONFIRMATION, s);
-                alert.show();
+        try {
+            // -l n limits the codes to n bits, -j n codes n files at the same time,
+            // -D names the dictionary to encode with, or the directory of the dictionaries to decode with
+            int first = 1;
+            for (; first + 1 < args.length; first += 2) {
+                if (args[first].equals("-l"))
+                    batch.setMaxCodeLength(Integer.parseInt(args[first + 1]));
+                else if (args[first].equals("-j"))
+                    batch.setThreads(Integer.parseInt(args[first + 1]));
+                else if (args[first].equals("-D") && args[0].equals("-d"))
+                    batch.setDictionaries(new HuffmanDictionaryCache(new File(args[first + 1]), DICTIONARY_CACHE));
+                else if (args[first].equals("-D"))
+                    batch.setDictionary(HuffmanDictionary.read(new File(args[first + 1])));
+                else
+                    break;
             }
+
+            HuffmanStats huffmanStats = null;
+            if (stats) {
+                huffmanStats = HuffmanStats.register();
+                batch.setMetricsListener(huffmanStats);
+            }
+
+            List<File> files = Batch.collect(Arrays.asList(args).subList(first, args.length), args[0].equals("-d"));
+            Batch.Summary summary = batch.run(files);
+            summary.print(System.out);
+            if (huffmanStats != null)
+                System.out.println(huffmanStats);
+            return summary.getFailures() > 0 ? 1 : 0;
+
         } catch (Exception e) {
-            Alert alert = new Alert(Alert.AlertType.ERROR, "Error Writing and Encoding File.");
-            alert.show();
             e.printStackTrace();
+            return 1;
         }
+    }
 
+    /**
+     * print the offsets of a pattern in the decoded bytes of .huff files, as file:offset, the files are decoded
+     * without being written
+     *
+     * @param args -s, the pattern, then the names
+     * @return the exit code, 0 if the pattern was found, 1 if it was not, 2 if a file failed
+     */
+    private static int search(String[] args) {
+        try {
+            HuffmanSearch search = new HuffmanSearch(args[1].getBytes(StandardCharsets.UTF_8));
+            boolean found = false;
+            boolean failed = false;
+            for (File file : Batch.collect(Arrays.asList(args).subList(2, args.length), true)) {
+                try {
+                    for (long offset : search.search(file)) {
+                        System.out.println(file.getPath() + ":" + offset);
+                        found = true;
+                    }
+                } catch (IOException e) {
+                    failed = true;
+                    System.out.println("Failed: " + file.getPath() + ": " + e);
+                }
+            }
+            return failed ? 2 : found ? 0 : 1;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 2;
+        }
     }
 
-    public void decode(ActionEvent actionEvent) {
+    /**
+     * serve requests until the process is killed, a line for every request is printed
+     *
+     * @param args -S, the port, then -j n
+     * @return the exit code
+     */
+    private static int serve(String[] args) {
+        try {
+            int threads = args.length == 4 && args[2].equals("-j") ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            Server server = new Server(Integer.parseInt(args[1]), threads);
+            server.setLog(System.out);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(server.getStats())));
+            System.out.println("Serving on port " + server.getPort() + " with " + threads + " threads");
+            server.serve();
+            return 0;
 
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    /**
+     * encode or decode files on the server, or print its stats
+     *
+     * @param args -C, the port, -e, -d or -s, then the names
+     * @return the exit code, 1 if any file failed
+     */
+    private static int client(String[] args) {
         try {
+            Client client = new Client(Integer.parseInt(args[1]));
+            if (args[2].equals("-s")) {
+                System.out.println(client.stats());
+                return 0;
+            }
+
+            boolean decode = args[2].equals("-d");
+            if (!decode && !args[2].equals("-e"))
+                throw new IOException("Error:" + args[2] + " is not -e, -d or -s.");
+            int files = 0;
+            int failures = 0;
+            for (File file : Batch.collect(Arrays.asList(args).subList(3, args.length), decode)) {
+                try {
+                    client.code(file, decode);
+                    files++;
+                } catch (IOException e) {
+                    failures++;
+                    System.out.println("Failed: " + file.getPath() + ": " + e);
+                }
+            }
+            System.out.println((decode ? "Decoded " : "Encoded ") + files + " files, " + failures + " failed");
+            return failures > 0 ? 1 : 0;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    /**
+     * add files to an archive, list it, or extract entries from it
+     *
+     * @param args -A, -L or -X, the archive, then the files to add or the entries to extract
+     * @return the exit code
+     */
+    private static int archive(String[] args) {
+        File file = new File(args[1]);
+        if (!args[0].equals("-A") && !file.isFile()) {
+            System.out.println("Error:No archive " + file.getPath() + ".");
+            return 1;
+        }
+
+        try (HuffmanArchive archive = new HuffmanArchive(file)) {
+            List<String> names = Arrays.asList(args).subList(2, args.length);
+
+            if (args[0].equals("-A")) {
+                // the entries are named by their paths under the current directory
+                Path current = Paths.get("").toAbsolutePath();
+                List<File> files = new ArrayList<>();
+                List<String> entryNames = new ArrayList<>();
+                for (File added : Batch.collect(names, false)) {
+                    Path path = added.toPath().toAbsolutePath().normalize();
+                    if (path.equals(file.toPath().toAbsolutePath().normalize()))
+                        continue;
+                    files.add(added);
+                    entryNames.add((path.startsWith(current) ? current.relativize(path) : path.getFileName()).toString()
+                            .replace(File.separatorChar, '/'));
+                }
+                archive.addAll(files, entryNames);
+                System.out.println("Added " + files.size() + " files to " + file.getPath());
+
+            } else if (args[0].equals("-L")) {
+                String[] methods = {"huffman", "shared", "stored"};
+                for (HuffmanArchive.Entry entry : archive.getEntries())
+                    System.out.printf("%12d %12d %-8s %s%n", entry.getOriginalLength(), entry.getDataLength(),
+                            methods[entry.getMethod()], entry.getName());
+
+            } else {
+                List<HuffmanArchive.Entry> entries = new ArrayList<>();
+                if (names.isEmpty())
+                    entries.addAll(archive.getEntries());
+                for (String name : names) {
+                    HuffmanArchive.Entry entry = archive.getEntry(name);
+                    if (entry == null)
+                        throw new IOException("Error:No entry " + name + " in the archive.");
+                    entries.add(entry);
+                }
 
-            FileChooser fileChooser = new FileChooser();
-            File source = fileChooser.showOpenDialog(((Button) actionEvent.getSource()).getParent().getScene().getWindow());
+                for (HuffmanArchive.Entry entry : entries) {
+                    // an entry is never written outside the current directory
+                    Path path = Paths.get(entry.getName()).normalize();
+                    if (path.isAbsolute() || path.startsWith("..") || path.toString().isEmpty())
+                        throw new IOException("Error:Entry " + entry.getName() + " is not a relative path.");
+                    File output = path.toFile();
+                    if (output.getParentFile() != null)
+                        output.getParentFile().mkdirs();
+                    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), PIPE_BUFFER)) {
+                        archive.extract(entry, out);
+                    }
+                    System.out.println(entry.getName());
+                }
+            }
+            return 0;
 
-            if (source != null && source.getName().endsWith(".huff")) {
-                File output = new File(source.getParent() + "/" + source.getName().replace(".huff", ""));
-                HuffmanDecoder decoder = new HuffmanDecoder(source, output);
-                decoder.decode();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
 
-                Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "Decoded to " + source.getParent() + "/" + source.getName().replace(".huff", ""));
-                alert.show();
+    /**
+     * train a dictionary on sample files and write it to a directory, named by its ID
+     *
+     * @param args -t, the directory, -l n, then the names of the samples
+     * @return the exit code
+     */
+    private static int train(String[] args) {
+        try {
+            int maxCodeLength = HuffmanCanonicalCode.MAX_LENGTH;
+            int first = 2;
+            if (args.length > 4 && args[2].equals("-l")) {
+                maxCodeLength = Integer.parseInt(args[3]);
+                first = 4;
             }
 
+            List<File> samples = Batch.collect(Arrays.asList(args).subList(first, args.length), false);
+            HuffmanDictionary dictionary = HuffmanDictionary.train(samples, maxCodeLength);
+            File file = dictionary.save(new File(args[1]));
+            System.out.println("Trained on " + samples.size() + " files: " + file.getPath());
+            return 0;
+
         } catch (Exception e) {
-            Alert alert = new Alert(Alert.AlertType.ERROR, "Error Reading and Decoding File.");
-            alert.show();
             e.printStackTrace();
+            return 1;
+        }
+    }
+
+    /**
+     * print the encoded size of the file with every length limit shorter than its longest huffman code,
+     * and what the limit costs compared to the huffman code
+     *
+     * @param file File
+     * @throws IOException I/O
+     */
+    private static void reportLengthLimits(File file) throws IOException {
+        long[] histogram = HuffmanHistogram.count(file);
+
+        HuffmanCanonicalCode huffman = HuffmanCanonicalCode.fromHistogram(histogram);
+        long huffmanBits = huffman.encodedBits(histogram);
+        System.out.println(file.getName() + ": " + file.length() + " bytes, huffman code " + (huffmanBits + 7) / 8
+                + " bytes, longest code " + huffman.getMaxLength() + " bits");
+
+        for (int limit = HuffmanCanonicalCode.MIN_LENGTH_LIMIT; limit < huffman.getMaxLength(); limit++) {
+            long bits = HuffmanCanonicalCode.fromHistogram(histogram, limit).encodedBits(histogram);
+            System.out.printf("  limit %2d: %d bytes, %+.3f%%%n", limit, (bits + 7) / 8, 100.0 * (bits - huffmanBits) / huffmanBits);
         }
+    }
+
+    /**
+     * write a range of the decoded bytes of a block file to standard output, only the blocks of the range are decoded
+     *
+     * @param offset offset of the first byte in the decoded file
+     * @param length number of bytes
+     * @param file   the block .huff file
+     * @throws IOException I/O, or if the range is not in the file
+     */
+    private static void readRange(long offset, int length, File file) throws IOException {
+        try (HuffmanSeekableFile seekable = new HuffmanSeekableFile(file)) {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), PIPE_BUFFER);
+            byte[] bytes = new byte[PIPE_BUFFER];
+            long end = offset + length;
+            if (offset < 0 || length < 0 || end > seekable.size())
+                throw new IOException("Error:Range " + offset + "+" + length + " is not in the file of " + seekable.size() + " bytes.");
+
+            for (long position = offset; position < end; ) {
+                int numberOfBytes = seekable.read(position, bytes, 0, (int) Math.min(bytes.length, end - position));
+                out.write(bytes, 0, numberOfBytes);
+                position += numberOfBytes;
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * encode or decode standard input to standard output, the input is read once
+     *
+     * @param option -b, -a or -d
+     * @throws IOException I/O
+     */
+    private static void pipe(String option) throws IOException {
+        InputStream in = new BufferedInputStream(System.in, PIPE_BUFFER);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), PIPE_BUFFER);
+
+        switch (option) {
+            case "-b":
+                HuffmanOutputStream huff = new HuffmanOutputStream(out, BLOCK_SIZE);
+                byte[] bytes = new byte[PIPE_BUFFER];
+                int numberOfBytes;
+                while ((numberOfBytes = in.read(bytes)) != -1)
+                    huff.write(bytes, 0, numberOfBytes);
+                huff.finish();
+                break;
+            case "-a":
+                HuffmanAdaptiveCoder.encode(in, out);
+                break;
+            case "-d":
+                HuffmanDecoder.decode(in, out);
+                break;
+            default:
+                throw new IOException("Error:" + option + " can not read standard input, use -b or -a.");
+        }
+        out.flush();
+    }
+
+
+    // the coding running in the background, null when none has run
+    private CodingTask task;
+
+    @FXML
+    private Button encodeButton;
+
+    @FXML
+    private Button decodeButton;
+
+    @FXML
+    private ProgressBar progressBar;
+
+    @FXML
+    private Text status;
+
+    @FXML
+    private Button cancelButton;
+
+
+    public void encode(ActionEvent actionEvent) {
+
+        FileChooser fileChooser = new FileChooser();
+
+        File file = fileChooser.showOpenDialog(((Button) actionEvent.getSource()).getParent().getScene().getWindow());
+        if (file != null) {
+            File out = new File(file.getAbsoluteFile() + ".huff");
+
+            start(new CodingTask() {
+                @Override
+                protected File code() throws Exception {
+                    HuffmanEncoder encoder = new HuffmanEncoder(file, out);
+                    encoder.setProgressListener(this);
+                    encoder.encode();
+                    return out;
+                }
+            }, () -> {
+                String ratio = StringFormatter.format("%.6f",((float)(file.length() - out.length()) * 100 / file.length())).get();
+                return "out:" + file.getAbsolutePath() + ".huff\nRatio:" + ratio + "%";
+            }, "Error Writing and Encoding File.");
+        }
+
+    }
+
+    public void decode(ActionEvent actionEvent) {
+
+        FileChooser fileChooser = new FileChooser();
+        File source = fileChooser.showOpenDialog(((Button) actionEvent.getSource()).getParent().getScene().getWindow());
+
+        if (source != null && source.getName().endsWith(".huff")) {
+            File output = new File(source.getParent() + "/" + source.getName().replace(".huff", ""));
+
+            start(new CodingTask() {
+                @Override
+                protected File code() throws Exception {
+                    HuffmanDecoder decoder = new HuffmanDecoder(source, output);
+                    decoder.setProgressListener(this);
+                    decoder.decode();
+                    return output;
+                }
+            }, () -> "Decoded to " + output.getPath(), "Error Reading and Decoding File.");
+        }
+
+    }
+
+    public void cancel(ActionEvent actionEvent) {
+        // interrupting the coding thread stops it, and it deletes the part of the file written
+        if (task != null)
+            task.cancel(true);
+    }
+
+    /**
+     * run the coding on a background thread, with its progress in the progress bar and the status,
+     * the buttons are disabled until it ends
+     *
+     * @param task    CodingTask
+     * @param done    the text of the alert when it succeeds, made when it does
+     * @param failure the text of the alert when it fails
+     */
+    private void start(CodingTask task, Supplier<String> done, String failure) {
+        this.task = task;
+
+        progressBar.progressProperty().bind(task.progressProperty());
+        status.textProperty().bind(task.messageProperty());
+        encodeButton.disableProperty().bind(task.runningProperty());
+        decodeButton.disableProperty().bind(task.runningProperty());
+        cancelButton.disableProperty().bind(task.runningProperty().not());
+
+        task.setOnSucceeded(event -> {
+            unbind("Done");
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION, done.get());
+            alert.show();
+        });
+        task.setOnFailed(event -> {
+            unbind("Failed");
+            Alert alert = new Alert(Alert.AlertType.ERROR, failure);
+            alert.show();
+            task.getException().printStackTrace();
+        });
+        task.setOnCancelled(event -> unbind("Cancelled"));
+
+        // a daemon thread does not keep the application open when the window is closed
+        Thread thread = new Thread(task, "huffman-coding");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
+    /**
+     * stop showing the task and show its end
+     *
+     * @param text the status
+     */
+    private void unbind(String text) {
+        progressBar.progressProperty().unbind();
+        status.textProperty().unbind();
+        status.setText(text);
     }
 }
@@ -0,0 +1,385 @@
+package App;
+
+import Huffman.HuffmanBufferDecoder;
+import Huffman.HuffmanBufferEncoder;
+import Huffman.HuffmanBufferPool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A daemon that encodes and decodes for clients on the loopback interface, so a script that codes many small files
+ * pays for starting the JVM and compiling the coder once, not for every file.
+ * every connection is one request, served by a thread of a fixed pool with its own coder, reused for every request:
+ * the op byte 'e' to encode or 'd' to decode, then the length of the message (long) and its bytes,
+ * or 's' alone for the stats of the server.
+ * the answer is chunks of at most CHUNK_SIZE bytes, each one its length (int) then its bytes, as they are coded,
+ * then 0 when it is done, or -1 and the error (UTF) when it failed.
+ * a message is encoded in the canonical or stored format as HuffmanBufferEncoder writes it, the same as -e writes
+ * a file, and only those formats are decoded. a message is decoded as its bytes come, a chunk at a time, so the answer
+ * starts before the request ends and the client must read it while it sends. a message is encoded only when all of it
+ * is in memory, as its code is made from the counts of all its bytes, so the messages being encoded share a budget
+ * of MEMORY bytes, and a message waits for its part of it. when all the threads are busy and QUEUE connections wait,
+ * a connection is answered with an error at once
+ *
+ * @see Client
+ */
+public class Server implements Closeable {
+
+    // the ops of the requests
+    static final int ENCODE = 'e';
+    static final int DECODE = 'd';
+    static final int STATS = 's';
+
+    // the most bytes of a chunk of an answer
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    // the end of an answer, and the mark of an error
+    static final int END = 0;
+    static final int ERROR = -1;
+
+    // connections waiting for a thread, per thread
+    private static final int QUEUE = 4;
+
+    // the longest message
+    private static final long MAX_MESSAGE = 256L * 1024 * 1024;
+
+    // the most bytes of messages held in memory to be encoded, by all the connections
+    private static final int MEMORY = 512 * 1024 * 1024;
+
+    // time a connection may wait for the bytes of its request
+    private static final int TIMEOUT_MILLIS = 30_000;
+
+    // the socket of the server
+    private final ServerSocket serverSocket;
+
+    // the threads of the connections
+    private final ThreadPoolExecutor pool;
+
+    // the chunks of the answers, and of the messages decoded
+    private final HuffmanBufferPool buffers;
+
+    // the bytes of the budget not held by a message being encoded
+    private final Semaphore memory = new Semaphore(MEMORY, true);
+
+    // the coders of every thread
+    private final ThreadLocal<HuffmanBufferEncoder> encoders = ThreadLocal.withInitial(HuffmanBufferEncoder::new);
+    private final ThreadLocal<HuffmanBufferDecoder> decoders = ThreadLocal.withInitial(HuffmanBufferDecoder::new);
+
+    // the totals of the requests
+    private final Stats stats = new Stats();
+
+    // a line for every request is printed to it, null for none
+    private volatile PrintStream log;
+
+
+    /**
+     * listen on a port of the loopback interface
+     *
+     * @param port    the port, 0 for any free one
+     * @param threads the most requests served at the same time
+     * @throws IOException if the port can not be listened on
+     */
+    public Server(int port, int threads) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+        AtomicInteger number = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE * threads), runnable -> {
+            Thread thread = new Thread(runnable, "huffman-connection-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        buffers = new HuffmanBufferPool(CHUNK_SIZE, 2 * threads, false);
+    }
+
+    /**
+     * @return the port listened on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @param log a line for every request is printed to it, null for none
+     */
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * @return the totals of the requests
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+
+    /**
+     * accept connections until the server is closed
+     *
+     * @throws IOException I/O of the server socket
+     */
+    public void serve() throws IOException {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                // closed
+                if (serverSocket.isClosed())
+                    return;
+                throw e;
+            }
+
+            try {
+                pool.execute(() -> handle(socket));
+            } catch (RejectedExecutionException e) {
+                stats.rejected.increment();
+                try (Socket rejected = socket) {
+                    DataOutputStream out = new DataOutputStream(rejected.getOutputStream());
+                    out.writeInt(ERROR);
+                    out.writeUTF("Error:Server busy.");
+                    out.flush();
+                } catch (IOException ignored) {
+                    // the client is gone
+                }
+            }
+        }
+    }
+
+    /**
+     * stop accepting connections, and stop the requests being served
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        pool.shutdownNow();
+    }
+
+
+    /**
+     * serve the request of a connection, then close it
+     */
+    private void handle(Socket socket) {
+        long start = System.nanoTime();
+        int op = -1;
+        long bytesIn = 0;
+        long[] bytesOut = new long[1];
+        String error = null;
+
+        ByteBuffer chunk = buffers.acquire();
+        ByteBuffer input = buffers.acquire();
+        try (Socket connection = socket) {
+            connection.setSoTimeout(TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), CHUNK_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), CHUNK_SIZE + 4));
+
+            try {
+                op = in.read();
+                if (op == STATS) {
+                    byte[] text = stats.toString().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(text.length);
+                    out.write(text);
+                } else if (op == ENCODE || op == DECODE) {
+                    long length = in.readLong();
+                    if (length < 0 || length > MAX_MESSAGE)
+                        throw new IOException("Error:Message of " + length + " bytes, the most is " + MAX_MESSAGE + ".");
+                    bytesIn = length;
+                    if (op == ENCODE)
+                        encode(in, (int) length, chunk, out, bytesOut);
+                    else
+                        decode(in, length, input, chunk, out, bytesOut);
+                } else {
+                    throw new IOException("Error:Unknown request " + op + ".");
+                }
+                out.writeInt(END);
+
+            } catch (IOException e) {
+                error = e.getMessage() == null ? e.toString() : e.getMessage();
+                // the answer may be cut, the client sees the error after the chunks already sent
+                out.writeInt(ERROR);
+                out.writeUTF(error);
+            }
+            out.flush();
+
+        } catch (IOException e) {
+            // the connection failed, nothing more can be told to the client
+            if (error == null)
+                error = e.toString();
+        } catch (RuntimeException e) {
+            if (error == null)
+                error = e.toString();
+        } finally {
+            // a coder stopped in the middle of a message starts a new one with the next request
+            encoders.get().reset();
+            decoders.get().reset();
+            buffers.release(chunk);
+            buffers.release(input);
+        }
+
+        long nanos = System.nanoTime() - start;
+        if (op != STATS)
+            stats.add(op == DECODE, bytesIn, bytesOut[0], nanos, error != null);
+        PrintStream log = this.log;
+        if (log != null)
+            log.printf("%c %d -> %d bytes, %.3f ms%s%n", op < 0 ? '?' : (char) op, bytesIn, bytesOut[0], nanos / 1e6,
+                    error == null ? "" : ", " + error);
+    }
+
+    /**
+     * read the message into memory within the budget, then encode it a chunk at a time
+     */
+    private void encode(DataInputStream in, int length, ByteBuffer chunk, DataOutputStream out, long[] bytesOut) throws IOException {
+        boolean acquired;
+        try {
+            acquired = memory.tryAcquire(length, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Error:Server stopped.");
+        }
+        if (!acquired)
+            throw new IOException("Error:Server busy, no memory for a message of " + length + " bytes.");
+
+        try {
+            byte[] message = new byte[length];
+            in.readFully(message);
+            ByteBuffer src = ByteBuffer.wrap(message);
+            HuffmanBufferEncoder encoder = encoders.get();
+            boolean done;
+            do {
+                chunk.clear();
+                done = encoder.encode(src, chunk);
+                writeChunk(chunk, out, bytesOut);
+            } while (!done);
+        } finally {
+            memory.release(length);
+        }
+    }
+
+    /**
+     * decode the message as its bytes come, a chunk of them at a time into input
+     */
+    private void decode(DataInputStream in, long length, ByteBuffer input, ByteBuffer chunk, DataOutputStream out,
+                        long[] bytesOut) throws IOException {
+        HuffmanBufferDecoder decoder = decoders.get();
+        long unread = length;
+        input.clear();
+        input.flip();
+        while (true) {
+            chunk.clear();
+            boolean done = decoder.decode(input, chunk);
+            // the decoder stops with room in dst only when it needs more of src
+            boolean starved = !done && chunk.hasRemaining();
+            writeChunk(chunk, out, bytesOut);
+            if (done) {
+                if (input.hasRemaining() || unread > 0)
+                    throw new IOException("Error:Bytes after the end of the message.");
+                return;
+            }
+            if (starved) {
+                if (unread == 0)
+                    throw new IOException("Error:Unexpected end of file.");
+                // the bytes the decoder left go first, then the next bytes of the message
+                input.compact();
+                int count = (int) Math.min(unread, input.remaining());
+                in.readFully(input.array(), input.arrayOffset() + input.position(), count);
+                input.position(input.position() + count);
+                input.flip();
+                unread -= count;
+            }
+        }
+    }
+
+    /**
+     * write the bytes of the chunk, if there are any
+     */
+    private static void writeChunk(ByteBuffer chunk, DataOutputStream out, long[] bytesOut) throws IOException {
+        chunk.flip();
+        if (!chunk.hasRemaining())
+            return;
+        out.writeInt(chunk.remaining());
+        out.write(chunk.array(), chunk.arrayOffset(), chunk.remaining());
+        bytesOut[0] += chunk.remaining();
+    }
+
+
+    /**
+     * the totals of the requests served, added to by the threads of the connections
+     */
+    public static class Stats {
+
+        // number of requests coded, failed, and turned away when the server was busy
+        private final LongAdder encodes = new LongAdder();
+        private final LongAdder decodes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        // bytes of the messages and of the answers
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+
+        // time spent on the requests, and the longest one
+        private final LongAdder nanos = new LongAdder();
+        private volatile long maxNanos;
+
+        private void add(boolean decode, long bytesIn, long bytesOut, long nanos, boolean failed) {
+            if (failed) {
+                failures.increment();
+            } else {
+                (decode ? decodes : encodes).increment();
+                this.bytesIn.add(bytesIn);
+                this.bytesOut.add(bytesOut);
+            }
+            this.nanos.add(nanos);
+            synchronized (this) {
+                maxNanos = Math.max(maxNanos, nanos);
+            }
+        }
+
+        public long getEncodes() {
+            return encodes.sum();
+        }
+
+        public long getDecodes() {
+            return decodes.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        @Override
+        public String toString() {
+            long requests = getEncodes() + getDecodes() + getFailures();
+            return String.format("%d encodes, %d decodes, %d failed, %d rejected, %d bytes in, %d bytes out%n"
+                            + "average %.3f ms, longest %.3f ms",
+                    getEncodes(), getDecodes(), getFailures(), getRejected(), bytesIn.sum(), bytesOut.sum(),
+                    requests == 0 ? 0 : nanos.sum() / 1e6 / requests, maxNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package Huffman;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Class to encode and decode the adaptive .huff format, which reads every input byte once,
+ * so it works on pipes and other streams that can not be read twice.
+ *
+ * No tree is written: both sides start with the same counts (1 for every byte value) and rebuild
+ * the canonical code from the running counts after every segment, the encoder from the bytes it read,
+ * the decoder from the bytes it decoded. Segments start small so the code adapts fast, and grow to MAX_SEGMENT.
+ *
+ * After the magic and version, every segment is: the original length (int), the body length (int),
+ * then the content bits with the last byte padded with 0s. A segment of original length 0 ends the stream
+ */
+public class HuffmanAdaptiveCoder {
+
+    // size of the first segment, every next one is twice as large until MAX_SEGMENT
+    private static final int FIRST_SEGMENT = 1024;
+    private static final int MAX_SEGMENT = 64 * 1024;
+
+    // when the counts add up to more than this, they are halved so the code follows recent bytes
+    private static final long AGING_LIMIT = 1 << 24;
+
+    // size of the stream buffers
+    private static final int SIZE = 8 * 1024;
+
+
+    /**
+     * encode in to out in the adaptive format, reading every byte of in once.
+     * a stream can not be read again, so data the codes make larger is not stored, it grows by the codes
+     * of a few segments at most, HuffmanEncoder stores such files
+     *
+     * @param in  stream of the bytes to encode, read to its end
+     * @param out stream of the .huff data, it is flushed but not closed
+     * @throws IOException I/O
+     */
+    public static void encode(InputStream in, OutputStream out) throws IOException {
+        encode(in, out, new HuffmanMetrics(false, HuffmanFormat.ADAPTIVE));
+    }
+
+    /**
+     * encode in to out in the adaptive format, and add the time of every phase to metrics
+     *
+     * @param in      stream of the bytes to encode, read to its end
+     * @param out     stream of the .huff data, it is flushed but not closed
+     * @param metrics HuffmanMetrics of the encode
+     * @throws IOException I/O
+     */
+    static void encode(InputStream in, OutputStream out, HuffmanMetrics metrics) throws IOException {
+        DataOutputStream output = new DataOutputStream(out);
+        output.write(HuffmanFormat.prefix(HuffmanFormat.ADAPTIVE));
+
+        Model model = new Model();
+        HuffmanBitWriter writer = new HuffmanBitWriter(output, SIZE);
+        byte[] segment = new byte[MAX_SEGMENT];
+        long[] histogram = new long[256];
+
+        int segmentSize = FIRST_SEGMENT;
+        int length;
+        while ((length = readSegment(in, segment, segmentSize)) > 0) {
+
+            // the body length is known from the code lengths and the frequencies of the segment
+            long start = System.nanoTime();
+            Arrays.fill(histogram, 0);
+            HuffmanHistogram.count(segment, 0, length, histogram);
+            metrics.time(HuffmanMetrics.Phase.HISTOGRAM, start);
+            metrics.addHistogram(histogram);
+            HuffmanCanonicalCode code = model.code;
+
+            start = System.nanoTime();
+            output.writeInt(length);
+            output.writeInt((int) ((code.encodedBits(histogram) + 7) / 8));
+            metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+            start = System.nanoTime();
+            long bits = writer.getBitsWritten();
+            writer.write(segment, 0, length, code.getCodes(), code.getLengths());
+            writer.flush();
+            metrics.time(HuffmanMetrics.Phase.CODING, start);
+            metrics.addContent(length, writer.getBitsWritten() - bits);
+
+            // the decoder updates its model the same way after decoding the segment
+            start = System.nanoTime();
+            model.update(histogram);
+            metrics.time(HuffmanMetrics.Phase.TREE, start);
+            segmentSize = Math.min(MAX_SEGMENT, segmentSize * 2);
+        }
+
+        // the empty segment ends the stream
+        output.writeInt(0);
+        output.writeInt(0);
+        output.flush();
+        metrics.addFlushes(writer.getFlushes());
+    }
+
+    /**
+     * decode the adaptive format, after the magic and version, from in to out
+     *
+     * @param in  stream of the .huff data after the version byte, read until the empty segment
+     * @param out stream of the decoded bytes, it is flushed but not closed
+     * @throws IOException I/O, or if the data is not valid
+     */
+    public static void decode(InputStream in, OutputStream out) throws IOException {
+        decode(in, out, new HuffmanMetrics(true, HuffmanFormat.ADAPTIVE));
+    }
+
+    /**
+     * decode the adaptive format, after the magic and version, from in to out, and add the time of every phase to metrics
+     *
+     * @param in      stream of the .huff data after the version byte, read until the empty segment
+     * @param out     stream of the decoded bytes, it is flushed but not closed
+     * @param metrics HuffmanMetrics of the decode
+     * @throws IOException I/O, or if the data is not valid
+     */
+    static void decode(InputStream in, OutputStream out, HuffmanMetrics metrics) throws IOException {
+        DataInputStream input = new DataInputStream(in);
+
+        Model model = new Model();
+        byte[] segment = new byte[MAX_SEGMENT];
+        byte[] body = new byte[MAX_SEGMENT];
+        long[] histogram = new long[256];
+
+        int length;
+        while ((length = input.readInt()) != 0) {
+            int bodyLength = input.readInt();
+            if (length < 0 || length > MAX_SEGMENT || bodyLength < 0)
+                throw new IOException("Error:Invalid segment in file.");
+
+            // the encoder coded the segment with the code of the model, every byte at most its longest code
+            if (bodyLength > (length * (long) model.code.getMaxLength() + 7) / 8)
+                throw new IOException("Error:Invalid segment in file.");
+
+            if (bodyLength > body.length)
+                body = new byte[bodyLength];
+            input.readFully(body, 0, bodyLength);
+
+            long start = System.nanoTime();
+            HuffmanDecodingTable table = model.table();
+            metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+            start = System.nanoTime();
+            HuffmanBitReader reader = new HuffmanBitReader(body, 0, bodyLength, bodyLength * 8L);
+            if (table.decode(reader, segment, 0, length) != length)
+                throw new IOException("Error:Unexpected end of segment.");
+            out.write(segment, 0, length);
+            metrics.time(HuffmanMetrics.Phase.CODING, start);
+            metrics.addContent(length, bodyLength * 8L - reader.bitsLeft);
+            metrics.addFlushes(1);
+
+            // update the model with the decoded bytes, as the encoder did with the read bytes
+            start = System.nanoTime();
+            Arrays.fill(histogram, 0);
+            HuffmanHistogram.count(segment, 0, length, histogram);
+            metrics.time(HuffmanMetrics.Phase.HISTOGRAM, start);
+            metrics.addHistogram(histogram);
+
+            start = System.nanoTime();
+            model.update(histogram);
+            metrics.time(HuffmanMetrics.Phase.TREE, start);
+        }
+
+        // the empty segment has an empty body
+        input.readInt();
+        out.flush();
+    }
+
+
+    /**
+     * read bytes until the segment has size bytes or the stream ends
+     *
+     * @return number of bytes read
+     */
+    private static int readSegment(InputStream in, byte[] segment, int size) throws IOException {
+        int length = 0;
+        int numberOfBytes;
+        while (length < size && (numberOfBytes = in.read(segment, length, size - length)) != -1)
+            length += numberOfBytes;
+        return length;
+    }
+
+
+    /**
+     * the running counts and the code built from them, the same on both sides
+     */
+    private static class Model {
+
+        // count of every byte value, never 0 so every byte value always has a code
+        private final long[] counts = new long[256];
+
+        // the code of the next segment
+        private HuffmanCanonicalCode code;
+
+        // decoding table of the code, built when the decoder needs it
+        private HuffmanDecodingTable table;
+
+        Model() {
+            Arrays.fill(counts, 1);
+            code = HuffmanCanonicalCode.fromHistogram(counts);
+        }
+
+        /**
+         * add the frequencies of a segment and rebuild the code
+         */
+        void update(long[] histogram) {
+            long total = 0;
+            for (int b = 0; b < 256; b++)
+                total += counts[b] += histogram[b];
+
+            // halve the counts, keeping them at least 1
+            if (total > AGING_LIMIT) {
+                for (int b = 0; b < 256; b++)
+                    counts[b] = (counts[b] + 1) / 2;
+            }
+
+            code = HuffmanCanonicalCode.fromHistogram(counts);
+            table = null;
+        }
+
+        HuffmanDecodingTable table() {
+            if (table == null)
+                table = new HuffmanDecodingTable(code.getCodes(), code.getLengths());
+            return table;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package Huffman;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Class of a .huff archive of many files, the entries, in one file with one directory.
+ *
+ * The archive is: magic and version ARCHIVE, the records of the entries and of the shared code tables,
+ * then the directory: the number of shared tables (int) and the offset of every one (long),
+ * the number of entries (int) and for every one its name (UTF), method (byte), shared table (int),
+ * data offset (long), data length (long) and original length (long),
+ * then the offset of the directory (long) as the last 8 bytes of the file.
+ *
+ * An entry is stored with its own code lengths header before its content, with the code of a shared table,
+ * or as its bytes when coding would not make them smaller. small files added together share one table,
+ * so they do not pay for a header each. the directory is read when the archive is opened, so listing takes
+ * no reads and an entry is extracted from its offset without reading the others.
+ * new entries are written after the old directory and a new directory is written after them when the archive
+ * is closed, the data of the entries already in it is not written again, and the old directory stays the valid one
+ * until the new one is written, so an archive whose adding failed still opens with the entries it had before
+ *
+ * @see HuffmanFormat#ARCHIVE
+ */
+public class HuffmanArchive implements Closeable {
+
+    // the methods of the entries
+    public static final int OWN_CODE = 0;
+    public static final int SHARED_CODE = 1;
+    public static final int STORED = 2;
+
+    // files up to this size added together share a code table, larger ones get their own code
+    public static final int SHARED_LIMIT = 64 * 1024;
+
+    // size of the stream buffers
+    private static final int SIZE = 64 * 1024;
+
+    // the archive file
+    private final FileChannel channel;
+
+    // the entries, in the order they were added, and the index of every name
+    private final List<Entry> entries = new ArrayList<>();
+    private final HashMap<String, Integer> names = new HashMap<>();
+
+    // file offset of every shared table record, and the tables read
+    private final List<Long> tableOffsets = new ArrayList<>();
+    private final HashMap<Integer, HuffmanDecodingTable> tables = new HashMap<>();
+
+    // where the next record is written, the directory is written there when the archive is closed
+    private long end;
+
+    // entries were added, the directory must be written
+    private boolean modified = false;
+
+
+    /**
+     * open an archive, it is made if the file does not exist or is empty
+     *
+     * @param file the archive file
+     * @throws IOException I/O, or if the file is not an archive
+     */
+    public HuffmanArchive(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(HuffmanFormat.prefix(HuffmanFormat.ARCHIVE)), 0);
+                end = HuffmanFormat.PREFIX_LENGTH;
+                modified = true;
+            } else {
+                readDirectory();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * @return the entries, in the order they were added
+     */
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * @param name name of an entry
+     * @return the entry, null if there is none of that name
+     */
+    public synchronized Entry getEntry(String name) {
+        Integer index = names.get(name);
+        return index == null ? null : entries.get(index);
+    }
+
+
+    /**
+     * add a file with its own code, or stored. an entry of the same name is replaced
+     *
+     * @param file the file to add
+     * @param name name of the entry
+     * @throws IOException I/O, or if the file changed while it was added
+     */
+    public synchronized void add(File file, String name) throws IOException {
+        long[] histogram = HuffmanHistogram.count(file);
+        long originalLength = 0;
+        for (long count : histogram)
+            originalLength += count;
+
+        HuffmanCanonicalCode code = HuffmanCanonicalCode.fromHistogram(histogram, HuffmanCanonicalCode.MAX_LENGTH);
+        if (originalLength == 0 || HuffmanStored.isIncompressible(code, histogram, code.headerLength(), originalLength)) {
+            addStored(file, name, originalLength);
+            return;
+        }
+
+        long dataOffset = end;
+        DataOutputStream outputStream = openRecord();
+        code.write(outputStream);
+        long encodedLength = writeContent(file, outputStream, code);
+        long dataLength = closeRecord(outputStream);
+        if (encodedLength != originalLength)
+            throw new IOException("Error:File changed while encoding.");
+
+        put(new Entry(name, OWN_CODE, -1, dataOffset, dataLength, originalLength));
+    }
+
+    /**
+     * add files, the small ones coded with one code made from all of them, the others with their own.
+     * entries of the same names are replaced
+     *
+     * @param files      the files to add
+     * @param entryNames name of the entry of every file
+     * @throws IOException I/O, or if a file changed while it was added
+     */
+    public synchronized void addAll(List<File> files, List<String> entryNames) throws IOException {
+        if (files.size() != entryNames.size())
+            throw new IllegalArgumentException("every file needs a name");
+
+        // the frequencies of all the small files, the large ones are added on their own
+        long[] histogram = new long[256];
+        List<Integer> small = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            if (file.length() > SHARED_LIMIT) {
+                add(file, entryNames.get(i));
+                continue;
+            }
+            byte[] bytes = readSmall(file);
+            HuffmanHistogram.count(bytes, 0, bytes.length, histogram);
+            small.add(i);
+        }
+        if (small.isEmpty())
+            return;
+
+        // the shared table comes before the entries that use it
+        HuffmanCanonicalCode code = HuffmanCanonicalCode.fromHistogram(histogram, HuffmanCanonicalCode.MAX_LENGTH);
+        int table = -1;
+        if (code.getMaxLength() > 0) {
+            table = tableOffsets.size();
+            tableOffsets.add(end);
+            DataOutputStream outputStream = openRecord();
+            code.write(outputStream);
+            closeRecord(outputStream);
+        }
+
+        long[] fileHistogram = new long[256];
+        for (int i : small) {
+            File file = files.get(i);
+            byte[] bytes = readSmall(file);
+            Arrays.fill(fileHistogram, 0);
+            HuffmanHistogram.count(bytes, 0, bytes.length, fileHistogram);
+
+            // a file that changed since it was counted may have bytes without a shared code
+            boolean covered = table >= 0;
+            for (int b = 0; b < 256 && covered; b++)
+                covered = fileHistogram[b] == 0 || code.getLengths()[b] > 0;
+            if (!covered || (code.encodedBits(fileHistogram) + 7) / 8 >= bytes.length) {
+                if (covered || bytes.length == 0)
+                    addBytes(bytes, entryNames.get(i));
+                else
+                    add(file, entryNames.get(i));
+                continue;
+            }
+
+            long dataOffset = end;
+            DataOutputStream outputStream = openRecord();
+            HuffmanBitWriter writer = new HuffmanBitWriter(outputStream, SIZE);
+            writer.write(bytes, 0, bytes.length, code.getCodes(), code.getLengths());
+            writer.flush();
+            long dataLength = closeRecord(outputStream);
+            put(new Entry(entryNames.get(i), SHARED_CODE, table, dataOffset, dataLength, bytes.length));
+        }
+    }
+
+
+    /**
+     * decode an entry to a stream, a buffer at a time
+     *
+     * @param entry an entry of this archive
+     * @param out   stream the decoded bytes are written to
+     * @throws IOException I/O, or if the entry is not valid
+     */
+    public synchronized void extract(Entry entry, OutputStream out) throws IOException {
+        if (entry.method == STORED) {
+            HuffmanStored.copy(channel, entry.dataOffset, entry.dataLength, Channels.newChannel(out),
+                    new HuffmanProgress(null, entry.dataLength));
+            return;
+        }
+
+        // a shared table is read first, it moves the channel
+        HuffmanDecodingTable table = null;
+        if (entry.method == SHARED_CODE)
+            table = sharedTable(entry.table);
+        else if (entry.method != OWN_CODE)
+            throw new IOException("Error:Unknown entry method " + entry.method + ".");
+
+        channel.position(entry.dataOffset);
+        InputStream inputStream = Channels.newInputStream(channel);
+        long contentLength = entry.dataLength;
+        if (entry.method == OWN_CODE) {
+            HuffmanCanonicalCode code = HuffmanCanonicalCode.read(new DataInputStream(inputStream));
+            table = new HuffmanDecodingTable(code.getCodes(), code.getLengths());
+            contentLength -= code.headerLength();
+        }
+
+        HuffmanBitReader reader = new HuffmanBitReader(inputStream, SIZE, contentLength * 8);
+        byte[] bytes = new byte[(int) Math.min(SIZE, Math.max(1, entry.originalLength))];
+        long remaining = entry.originalLength;
+        while (remaining > 0) {
+            int length = (int) Math.min(bytes.length, remaining);
+            if (table.decode(reader, bytes, 0, length) != length)
+                throw new IOException("Error:Unexpected end of file.");
+            out.write(bytes, 0, length);
+            remaining -= length;
+        }
+    }
+
+    /**
+     * write the directory if entries were added, then close the file
+     *
+     * @throws IOException I/O
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (modified && channel.isOpen())
+                writeDirectory();
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    /**
+     * add an entry of a file as it is
+     */
+    private void addStored(File file, String name, long originalLength) throws IOException {
+        long dataOffset = end;
+        try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (input.size() != originalLength)
+                throw new IOException("Error:File changed while encoding.");
+            channel.position(end);
+            HuffmanStored.copy(input, 0, originalLength, channel, new HuffmanProgress(null, originalLength));
+        }
+        end = channel.position();
+        put(new Entry(name, STORED, -1, dataOffset, end - dataOffset, originalLength));
+    }
+
+    /**
+     * add an entry of bytes as they are
+     */
+    private void addBytes(byte[] bytes, String name) throws IOException {
+        long dataOffset = end;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining())
+            channel.write(buffer, dataOffset + buffer.position());
+        end = dataOffset + bytes.length;
+        put(new Entry(name, STORED, -1, dataOffset, bytes.length, bytes.length));
+    }
+
+    /**
+     * write the codes of the bytes of the file, padded to a byte
+     *
+     * @return number of bytes encoded
+     */
+    private static long writeContent(File file, OutputStream outputStream, HuffmanCanonicalCode code) throws IOException {
+        HuffmanBitWriter writer = new HuffmanBitWriter(outputStream, SIZE);
+        long encodedLength = 0;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            byte[] bytes = new byte[SIZE];
+            int numberOfBytes;
+            while ((numberOfBytes = inputStream.read(bytes, 0, SIZE)) != -1) {
+                writer.write(bytes, 0, numberOfBytes, code.getCodes(), code.getLengths());
+                encodedLength += numberOfBytes;
+                HuffmanProgress.checkInterrupted();
+            }
+        }
+        writer.flush();
+        return encodedLength;
+    }
+
+    /**
+     * @return the bytes of a small file
+     */
+    private static byte[] readSmall(File file) throws IOException {
+        try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (input.size() > SHARED_LIMIT)
+                throw new IOException("Error:File changed while encoding.");
+            return HuffmanBlockIndex.readFully(input, 0, (int) input.size()).array();
+        }
+    }
+
+    /**
+     * @return a stream that writes a record at the end of the records
+     */
+    private DataOutputStream openRecord() throws IOException {
+        channel.position(end);
+        return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), SIZE));
+    }
+
+    /**
+     * flush the record, the next one goes after it
+     *
+     * @return number of bytes of the record
+     */
+    private long closeRecord(DataOutputStream outputStream) throws IOException {
+        outputStream.flush();
+        long start = end;
+        end = channel.position();
+        return end - start;
+    }
+
+    /**
+     * add an entry to the directory, in place of the entry of the same name
+     */
+    private void put(Entry entry) {
+        Integer index = names.get(entry.name);
+        if (index == null) {
+            names.put(entry.name, entries.size());
+            entries.add(entry);
+        } else {
+            entries.set(index, entry);
+        }
+        modified = true;
+    }
+
+    /**
+     * @return the decoding table of a shared table record, read once
+     */
+    private HuffmanDecodingTable sharedTable(int table) throws IOException {
+        if (table < 0 || table >= tableOffsets.size())
+            throw new IOException("Error:Invalid entry in archive.");
+        HuffmanDecodingTable shared = tables.get(table);
+        if (shared == null) {
+            channel.position(tableOffsets.get(table));
+            HuffmanCanonicalCode code = HuffmanCanonicalCode.read(new DataInputStream(Channels.newInputStream(channel)));
+            shared = new HuffmanDecodingTable(code.getCodes(), code.getLengths());
+            tables.put(table, shared);
+        }
+        return shared;
+    }
+
+
+    /**
+     * read the directory at the end of the archive
+     */
+    private void readDirectory() throws IOException {
+        long size = channel.size();
+        if (size < HuffmanFormat.PREFIX_LENGTH + 16 || !Arrays.equals(
+                HuffmanBlockIndex.readFully(channel, 0, HuffmanFormat.PREFIX_LENGTH).array(), HuffmanFormat.prefix(HuffmanFormat.ARCHIVE)))
+            throw new IOException("Error:Not an archive.");
+
+        // the last 8 bytes are the offset of the directory
+        end = HuffmanBlockIndex.readFully(channel, size - 8, 8).getLong();
+        if (end < HuffmanFormat.PREFIX_LENGTH || end > size - 16 || size - 8 - end > Integer.MAX_VALUE)
+            throw new IOException("Error:Could not read directory in archive.");
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                HuffmanBlockIndex.readFully(channel, end, (int) (size - 8 - end)).array()));
+
+        int numberOfTables = in.readInt();
+        if (numberOfTables < 0)
+            throw new IOException("Error:Could not read directory in archive.");
+        for (int i = 0; i < numberOfTables; i++)
+            tableOffsets.add(in.readLong());
+
+        int numberOfEntries = in.readInt();
+        if (numberOfEntries < 0)
+            throw new IOException("Error:Could not read directory in archive.");
+        for (int i = 0; i < numberOfEntries; i++) {
+            Entry entry = new Entry(in.readUTF(), in.readByte(), in.readInt(), in.readLong(), in.readLong(), in.readLong());
+            if (entry.dataOffset < HuffmanFormat.PREFIX_LENGTH || entry.dataLength < 0 || entry.dataOffset + entry.dataLength > end
+                    || entry.originalLength < 0)
+                throw new IOException("Error:Could not read directory in archive.");
+            names.put(entry.name, entries.size());
+            entries.add(entry);
+        }
+
+        // new records go after the directory, it is kept until the new one is written
+        end = size;
+    }
+
+    /**
+     * write the directory after the records, and cut the file after it
+     */
+    private void writeDirectory() throws IOException {
+        DataOutputStream outputStream = openRecord();
+        outputStream.writeInt(tableOffsets.size());
+        for (long offset : tableOffsets)
+            outputStream.writeLong(offset);
+
+        outputStream.writeInt(entries.size());
+        for (Entry entry : entries) {
+            outputStream.writeUTF(entry.name);
+            outputStream.writeByte(entry.method);
+            outputStream.writeInt(entry.table);
+            outputStream.writeLong(entry.dataOffset);
+            outputStream.writeLong(entry.dataLength);
+            outputStream.writeLong(entry.originalLength);
+        }
+        outputStream.writeLong(end);
+        outputStream.flush();
+        channel.truncate(channel.position());
+        modified = false;
+    }
+
+
+    /**
+     * an entry of the directory
+     */
+    public static class Entry {
+
+        // name of the entry, a relative path with / between its parts
+        private final String name;
+
+        // OWN_CODE, SHARED_CODE or STORED
+        private final int method;
+
+        // index of the shared table, -1 if the entry does not use one
+        private final int table;
+
+        // file offset and number of bytes of the data of the entry
+        private final long dataOffset;
+        private final long dataLength;
+
+        // number of bytes the entry decodes to
+        private final long originalLength;
+
+        private Entry(String name, int method, int table, long dataOffset, long dataLength, long originalLength) {
+            this.name = name;
+            this.method = method;
+            this.table = table;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.originalLength = originalLength;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return OWN_CODE, SHARED_CODE or STORED
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * @return number of bytes the entry takes in the archive
+         */
+        public long getDataLength() {
+            return dataLength;
+        }
+
+        /**
+         * @return number of bytes the entry decodes to
+         */
+        public long getOriginalLength() {
+            return originalLength;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package Huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class to read the bits of huffman coded content through a 64 bit buffer,
+ * bits are read from the least significant bit of every byte first, the same order HuffmanEncoder writes them,
+ * so the decoding table can look at several bits at once
+ *
+ * @see HuffmanDecodingTable
+ */
+class HuffmanBitReader {
+
+    // the stream the content is read from, null when all the content is already in the buffer
+    private final InputStream stream;
+
+    // the channel the content is mapped from, window by window, null when the content is not mapped
+    private final FileChannel channel;
+
+    // the mapped window the bits are read from
+    private ByteBuffer window;
+
+    // file offset after the last byte of the window, and after the last byte of the content
+    private long windowEnd;
+    private long contentEnd;
+
+    // buffer of bytes read from the stream
+    final byte[] bytes;
+
+    // index of the next byte to move from the byte buffer to the bit buffer
+    int position;
+
+    // index after the last valid byte in the byte buffer
+    int limit;
+
+    // number of content bytes that are not read from the stream yet
+    private long bytesToRead;
+
+    // the next bits of the content, the next bit to consume is bit 0
+    long bitBuffer;
+
+    // number of valid bits in bitBuffer
+    int bitCount;
+
+    // number of content bits not consumed yet, bits after them (padding) are never decoded
+    long bitsLeft;
+
+
+    /**
+     * reader over a stream, reads at most the bytes that hold contentBits bits
+     *
+     * @param stream      InputStream positioned at the first byte of the content
+     * @param bufferSize  size of the byte buffer
+     * @param contentBits number of bits of the content
+     */
+    HuffmanBitReader(InputStream stream, int bufferSize, long contentBits) {
+        this.stream = stream;
+        this.channel = null;
+        this.bytes = new byte[bufferSize];
+        this.bytesToRead = (contentBits + 7) >>> 3;
+        this.bitsLeft = contentBits;
+    }
+
+    /**
+     * reader over content that is already in memory
+     *
+     * @param bytes       array holding the content
+     * @param offset      index of the first byte of content
+     * @param length      number of bytes of content
+     * @param contentBits number of bits of the content
+     */
+    HuffmanBitReader(byte[] bytes, int offset, int length, long contentBits) {
+        this.stream = null;
+        this.channel = null;
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+        this.bitsLeft = contentBits;
+    }
+
+    /**
+     * reader over mapped windows of a file, the bits are read straight from the mapping without copying them
+     *
+     * @param channel     FileChannel of the file
+     * @param position    file offset of the first byte of content
+     * @param contentBits number of bits of the content
+     * @see HuffmanMapping
+     */
+    HuffmanBitReader(FileChannel channel, long position, long contentBits) {
+        this.stream = null;
+        this.channel = channel;
+        this.bytes = null;
+        this.windowEnd = position;
+        this.contentEnd = position + ((contentBits + 7) >>> 3);
+        this.window = ByteBuffer.allocate(0);
+        this.bitsLeft = contentBits;
+    }
+
+    /**
+     * move bytes to the bit buffer until it holds more than 56 bits or the content ends
+     *
+     * @throws IOException I/O
+     */
+    void refill() throws IOException {
+        if (channel != null) {
+            refillFromWindow();
+            return;
+        }
+
+        while (bitCount <= 56) {
+            if (position == limit && !fill())
+                return;
+            bitBuffer |= (long) (bytes[position++] & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    /**
+     * move bytes from the mapped window, 8 at a time while the window has them.
+     * the long is added whole, bits above bitCount are the next bytes and are added again by the next refill
+     */
+    private void refillFromWindow() throws IOException {
+        int windowPosition = window.position();
+        if (window.limit() - windowPosition >= 8) {
+            bitBuffer |= window.getLong(windowPosition) << bitCount;
+            window.position(windowPosition + ((63 - bitCount) >>> 3));
+            bitCount |= 56;
+            return;
+        }
+
+        while (bitCount <= 56) {
+            if (!window.hasRemaining()) {
+                if (windowEnd == contentEnd)
+                    return;
+                window = HuffmanMapping.map(channel, FileChannel.MapMode.READ_ONLY, windowEnd, contentEnd);
+                windowEnd += window.limit();
+                if (window.limit() >= 8) {
+                    refillFromWindow();
+                    return;
+                }
+            }
+            bitBuffer |= (long) (window.get() & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    /**
+     * drop n bits from the bit buffer, n must not be larger than bitCount
+     *
+     * @param n number of bits
+     */
+    void skip(int n) {
+        bitBuffer >>>= n;
+        bitCount -= n;
+        bitsLeft -= n;
+    }
+
+    /**
+     * read the next part of the content from the stream into the byte buffer
+     *
+     * @return false if there is no more content
+     * @throws IOException if the stream ends before the content does
+     */
+    private boolean fill() throws IOException {
+        if (stream == null || bytesToRead == 0)
+            return false;
+
+        int numberOfBytes = stream.read(bytes, 0, (int) Math.min(bytes.length, bytesToRead));
+        if (numberOfBytes == -1)
+            throw new IOException("Error:Unexpected end of file.");
+
+        bytesToRead -= numberOfBytes;
+        position = 0;
+        limit = numberOfBytes;
+        return true;
+    }
+}
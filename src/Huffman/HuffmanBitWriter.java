@@ -0,0 +1,291 @@
+package Huffman;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Class to write huffman codes through a 64 bit accumulator,
+ * bits are written from the least significant bit of every byte first,
+ * and whole bytes are flushed to a byte buffer that is written to the stream when full
+ *
+ * @see HuffmanBitReader
+ */
+class HuffmanBitWriter {
+
+    // the stream the bytes are written to
+    private final OutputStream stream;
+
+    // buffer of bytes to be written
+    private final byte[] bytes;
+
+    // index of the next byte to write in the buffer
+    private int position = 0;
+
+    // the bits not flushed yet, the first bit is bit 0
+    private long bitBuffer = 0;
+
+    // number of bits in bitBuffer, always less than 32 between calls
+    private int bitCount = 0;
+
+    // number of bits written since the writer was made
+    private long bitsWritten = 0;
+
+    // number of times the byte buffer was written to the stream
+    private long flushes = 0;
+
+
+    /**
+     * @param stream     OutputStream to write to
+     * @param bufferSize size of the byte buffer
+     */
+    HuffmanBitWriter(OutputStream stream, int bufferSize) {
+        this.stream = stream;
+        this.bytes = new byte[bufferSize + 4];
+    }
+
+
+    /**
+     * write the code of every byte in bytes[from..to)
+     *
+     * @param bytes   the bytes to encode
+     * @param from    index of the first byte
+     * @param to      index after the last byte
+     * @param codes   code of every byte value, indexed by the unsigned byte, the first bit is bit 0
+     * @param lengths code length of every byte value, at most 64
+     * @throws IOException I/O
+     */
+    void write(byte[] bytes, int from, int to, long[] codes, int[] lengths) throws IOException {
+
+        // keep the state in locals for the loop
+        long bitBuffer = this.bitBuffer;
+        int bitCount = this.bitCount;
+        long bitsWritten = this.bitsWritten;
+        byte[] buffer = this.bytes;
+        int position = this.position;
+        int flushLimit = buffer.length - 4;
+
+        for (int i = from; i < to; i++) {
+            int symbol = bytes[i] & 0xFF;
+            long code = codes[symbol];
+            int length = lengths[symbol];
+            bitsWritten += length;
+
+            // a code longer than 32 bits is added in two parts, to never overflow the accumulator
+            if (length > 32) {
+                bitBuffer |= (code & 0xFFFFFFFFL) << bitCount;
+                position = emit(buffer, position, bitBuffer, flushLimit);
+                bitBuffer >>>= 32;
+                code >>>= 32;
+                length -= 32;
+            }
+
+            bitBuffer |= code << bitCount;
+            bitCount += length;
+
+            // flush 4 whole bytes when the accumulator is half full
+            if (bitCount >= 32) {
+                position = emit(buffer, position, bitBuffer, flushLimit);
+                bitBuffer >>>= 32;
+                bitCount -= 32;
+            }
+        }
+
+        this.bitBuffer = bitBuffer;
+        this.bitCount = bitCount;
+        this.bitsWritten = bitsWritten;
+        this.position = position;
+    }
+
+    /**
+     * write the code of every byte from the position to the limit of bytes, without moving its position,
+     * the same as write(byte[]) over a heap, direct or mapped buffer
+     *
+     * @param bytes   ByteBuffer of the bytes to encode
+     * @param codes   code of every byte value, indexed by the unsigned byte, the first bit is bit 0
+     * @param lengths code length of every byte value, at most 64
+     * @throws IOException I/O
+     */
+    void write(ByteBuffer bytes, long[] codes, int[] lengths) throws IOException {
+
+        // keep the state in locals for the loop
+        long bitBuffer = this.bitBuffer;
+        int bitCount = this.bitCount;
+        long bitsWritten = this.bitsWritten;
+        byte[] buffer = this.bytes;
+        int position = this.position;
+        int flushLimit = buffer.length - 4;
+
+        for (int i = bytes.position(), end = bytes.limit(); i < end; i++) {
+            int symbol = bytes.get(i) & 0xFF;
+            long code = codes[symbol];
+            int length = lengths[symbol];
+            bitsWritten += length;
+
+            // a code longer than 32 bits is added in two parts, to never overflow the accumulator
+            if (length > 32) {
+                bitBuffer |= (code & 0xFFFFFFFFL) << bitCount;
+                position = emit(buffer, position, bitBuffer, flushLimit);
+                bitBuffer >>>= 32;
+                code >>>= 32;
+                length -= 32;
+            }
+
+            bitBuffer |= code << bitCount;
+            bitCount += length;
+
+            // flush 4 whole bytes when the accumulator is half full
+            if (bitCount >= 32) {
+                position = emit(buffer, position, bitBuffer, flushLimit);
+                bitBuffer >>>= 32;
+                bitCount -= 32;
+            }
+        }
+
+        this.bitBuffer = bitBuffer;
+        this.bitCount = bitCount;
+        this.bitsWritten = bitsWritten;
+        this.position = position;
+    }
+
+    /**
+     * write the code of every byte in bytes[from..to) with the code of its context, the byte before it
+     *
+     * @param bytes   the bytes to encode
+     * @param from    index of the first byte
+     * @param to      index after the last byte
+     * @param codes   codes of every context, indexed by the previous byte then the byte
+     * @param lengths code lengths of every context, at most 64
+     * @param context the byte before bytes[from]
+     * @return the context of the byte after bytes[to - 1]
+     * @throws IOException I/O
+     * @see HuffmanContextModel
+     */
+    int write(byte[] bytes, int from, int to, long[][] codes, int[][] lengths, int context) throws IOException {
+
+        // keep the state in locals for the loop
+        long bitBuffer = this.bitBuffer;
+        int bitCount = this.bitCount;
+        long bitsWritten = this.bitsWritten;
+        byte[] buffer = this.bytes;
+        int position = this.position;
+        int flushLimit = buffer.length - 4;
+
+        for (int i = from; i < to; i++) {
+            int symbol = bytes[i] & 0xFF;
+            long code = codes[context][symbol];
+            int length = lengths[context][symbol];
+            bitsWritten += length;
+            context = symbol;
+
+            // a code longer than 32 bits is added in two parts, to never overflow the accumulator
+            if (length > 32) {
+                bitBuffer |= (code & 0xFFFFFFFFL) << bitCount;
+                position = emit(buffer, position, bitBuffer, flushLimit);
+                bitBuffer >>>= 32;
+                code >>>= 32;
+                length -= 32;
+            }
+
+            bitBuffer |= code << bitCount;
+            bitCount += length;
+
+            // flush 4 whole bytes when the accumulator is half full
+            if (bitCount >= 32) {
+                position = emit(buffer, position, bitBuffer, flushLimit);
+                bitBuffer >>>= 32;
+                bitCount -= 32;
+            }
+        }
+
+        this.bitBuffer = bitBuffer;
+        this.bitCount = bitCount;
+        this.bitsWritten = bitsWritten;
+        this.position = position;
+        return context;
+    }
+
+    /**
+     * put the low 32 bits of the accumulator in the buffer, and write the buffer to the stream when it reaches
+     * flushLimit. the loops keep their state in locals, so it is passed in and the position given back
+     *
+     * @param buffer     the byte buffer
+     * @param position   index of the next byte to write in the buffer
+     * @param bitBuffer  the accumulator
+     * @param flushLimit position at which the buffer is written
+     * @return the position after the 4 bytes, 0 if the buffer was written
+     * @throws IOException I/O
+     */
+    private int emit(byte[] buffer, int position, long bitBuffer, int flushLimit) throws IOException {
+        buffer[position] = (byte) bitBuffer;
+        buffer[position + 1] = (byte) (bitBuffer >>> 8);
+        buffer[position + 2] = (byte) (bitBuffer >>> 16);
+        buffer[position + 3] = (byte) (bitBuffer >>> 24);
+        position += 4;
+        if (position >= flushLimit) {
+            stream.write(buffer, 0, position);
+            flushes++;
+            return 0;
+        }
+        return position;
+    }
+
+    /**
+     * write the lowest n bits of value, n at most 32
+     *
+     * @param value the bits
+     * @param n     number of bits
+     * @throws IOException I/O
+     */
+    void writeBits(long value, int n) throws IOException {
+        bitBuffer |= (value & ((1L << n) - 1)) << bitCount;
+        bitCount += n;
+        bitsWritten += n;
+        while (bitCount >= 8) {
+            writeByte((int) bitBuffer);
+            bitBuffer >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    /**
+     * pad the last byte with 0s and write everything in the buffer to the stream
+     *
+     * @throws IOException I/O
+     */
+    void flush() throws IOException {
+        while (bitCount > 0) {
+            writeByte((int) bitBuffer);
+            bitBuffer >>>= 8;
+            bitCount = Math.max(0, bitCount - 8);
+        }
+        if (position > 0) {
+            stream.write(bytes, 0, position);
+            position = 0;
+            flushes++;
+        }
+    }
+
+    /**
+     * @return number of bits written, not counting padding
+     */
+    long getBitsWritten() {
+        return bitsWritten;
+    }
+
+    /**
+     * @return number of times the byte buffer was written to the stream
+     */
+    long getFlushes() {
+        return flushes;
+    }
+
+    private void writeByte(int b) throws IOException {
+        bytes[position++] = (byte) b;
+        if (position >= bytes.length - 4) {
+            stream.write(bytes, 0, position);
+            position = 0;
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package Huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Class of one block of a block .huff file, every block is coded with its own code,
+ * so blocks can be encoded and decoded independently.
+ *
+ * A block record is: the type (1 byte), the original length (int), the body length (int) then the body,
+ * the body of a huffman block is the code lengths header then the content bits with the last byte padded with 0s,
+ * the body of a stored block is the bytes as they are.
+ * After the last record comes the END byte
+ *
+ * @see HuffmanFormat
+ */
+class HuffmanBlock {
+
+    // block coded with its own canonical code
+    static final int HUFFMAN = 0;
+
+    // block written as it is, when its codes would not make it smaller
+    static final int STORED = 1;
+
+    // the byte after the last block record
+    static final int END = 0xFF;
+
+    // number of bytes of a record before the body
+    static final int RECORD_HEADER_LENGTH = 9;
+
+    // size of the bit writer buffer
+    private static final int SIZE = 8 * 1024;
+
+    // the block type
+    final int type;
+
+    // number of bytes the block decodes to
+    final int originalLength;
+
+    // the body of the record
+    final byte[] body;
+
+    // number of bytes used in body
+    final int bodyLength;
+
+
+    HuffmanBlock(int type, int originalLength, byte[] body, int bodyLength) {
+        this.type = type;
+        this.originalLength = originalLength;
+        this.body = body;
+        this.bodyLength = bodyLength;
+    }
+
+
+    /**
+     * encode bytes[offset..offset + length) with the code of their own frequencies
+     *
+     * @param bytes  the bytes of the block
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return HuffmanBlock
+     * @throws IOException I/O
+     */
+    static HuffmanBlock encode(byte[] bytes, int offset, int length) throws IOException {
+        return encode(bytes, offset, length, HuffmanCanonicalCode.MAX_LENGTH);
+    }
+
+    /**
+     * encode bytes[offset..offset + length) with the code of their own frequencies, no code longer than maxCodeLength
+     *
+     * @param bytes         the bytes of the block
+     * @param offset        index of the first byte
+     * @param length        number of bytes
+     * @param maxCodeLength the longest code allowed
+     * @return HuffmanBlock
+     * @throws IOException I/O
+     * @see HuffmanCanonicalCode#fromHistogram(long[], int)
+     */
+    static HuffmanBlock encode(byte[] bytes, int offset, int length, int maxCodeLength) throws IOException {
+        return encode(bytes, offset, length, maxCodeLength, new HuffmanMetrics(false, HuffmanFormat.BLOCKS));
+    }
+
+    /**
+     * encode bytes[offset..offset + length), and add the time of every phase to metrics
+     *
+     * @param bytes         the bytes of the block
+     * @param offset        index of the first byte
+     * @param length        number of bytes
+     * @param maxCodeLength the longest code allowed
+     * @param metrics       HuffmanMetrics of the file the block is in
+     * @return HuffmanBlock
+     * @throws IOException I/O
+     */
+    static HuffmanBlock encode(byte[] bytes, int offset, int length, int maxCodeLength, HuffmanMetrics metrics) throws IOException {
+
+        // frequencies and codes of this block only
+        long start = System.nanoTime();
+        long[] histogram = new long[256];
+        HuffmanHistogram.count(bytes, offset, length, histogram);
+        metrics.time(HuffmanMetrics.Phase.HISTOGRAM, start);
+        metrics.addHistogram(histogram);
+
+        start = System.nanoTime();
+        HuffmanCanonicalCode code = HuffmanCanonicalCode.fromHistogram(histogram, maxCodeLength);
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        // the size of the body is known from the code lengths, a block that would not be smaller is stored
+        if (HuffmanStored.isIncompressible(code, histogram, code.headerLength(), length)) {
+            start = System.nanoTime();
+            byte[] body = Arrays.copyOfRange(bytes, offset, offset + length);
+            metrics.time(HuffmanMetrics.Phase.CODING, start);
+            metrics.addContent(length, length * 8L);
+            return new HuffmanBlock(STORED, length, body, length);
+        }
+
+        start = System.nanoTime();
+        int bodyLength = code.headerLength() + (int) ((code.encodedBits(histogram) + 7) / 8);
+        BodyOutputStream body = new BodyOutputStream(bodyLength);
+        code.write(new DataOutputStream(body));
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+        start = System.nanoTime();
+        HuffmanBitWriter writer = new HuffmanBitWriter(body, SIZE);
+        writer.write(bytes, offset, offset + length, code.getCodes(), code.getLengths());
+        writer.flush();
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(length, writer.getBitsWritten());
+        metrics.addFlushes(writer.getFlushes());
+
+        return new HuffmanBlock(HUFFMAN, length, body.bytes(), body.size());
+    }
+
+    /**
+     * decode the body of the block into out[offset..offset + originalLength)
+     *
+     * @param out    array to write the decoded bytes to
+     * @param offset index of the first decoded byte
+     * @throws IOException if the body is not a valid block
+     */
+    void decode(byte[] out, int offset) throws IOException {
+        decode(out, offset, new HuffmanMetrics(true, HuffmanFormat.BLOCKS));
+    }
+
+    /**
+     * decode the body of the block into out[offset..offset + originalLength), and add the time of every phase to metrics
+     *
+     * @param out     array to write the decoded bytes to
+     * @param offset  index of the first decoded byte
+     * @param metrics HuffmanMetrics of the file the block is in
+     * @throws IOException if the body is not a valid block
+     */
+    void decode(byte[] out, int offset, HuffmanMetrics metrics) throws IOException {
+        if (type == STORED) {
+            if (bodyLength != originalLength)
+                throw new IOException("Error:Invalid block in file.");
+            long start = System.nanoTime();
+            System.arraycopy(body, 0, out, offset, originalLength);
+            metrics.time(HuffmanMetrics.Phase.CODING, start);
+            metrics.addContent(originalLength, originalLength * 8L);
+            return;
+        }
+        if (type != HUFFMAN)
+            throw new IOException("Error:Unknown block type " + type + ".");
+
+        // read the code lengths at the start of the body
+        long start = System.nanoTime();
+        HuffmanCanonicalCode code = readCode();
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+        start = System.nanoTime();
+        HuffmanDecodingTable table = new HuffmanDecodingTable(code.getCodes(), code.getLengths());
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        start = System.nanoTime();
+        long contentBits = decode(out, offset, originalLength, table, code.headerLength());
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(originalLength, contentBits);
+    }
+
+    /**
+     * @return the code lengths header at the start of the body of a huffman block
+     * @throws IOException if the header is not valid
+     */
+    HuffmanCanonicalCode readCode() throws IOException {
+        return HuffmanCanonicalCode.read(new DataInputStream(new ByteArrayInputStream(body, 0, bodyLength)));
+    }
+
+    /**
+     * decode the first bytes of a huffman block with a table already built from its header
+     *
+     * @param out          array to write the decoded bytes to
+     * @param offset       index of the first decoded byte
+     * @param length       number of bytes to decode, at most originalLength
+     * @param table        HuffmanDecodingTable of the code of the block
+     * @param headerLength number of bytes of the code lengths header
+     * @return number of bits of the codes read
+     * @throws IOException if the body is not a valid block
+     */
+    long decode(byte[] out, int offset, int length, HuffmanDecodingTable table, int headerLength) throws IOException {
+        long contentBits = (bodyLength - headerLength) * 8L;
+        HuffmanBitReader reader = new HuffmanBitReader(body, headerLength, bodyLength - headerLength, contentBits);
+        if (table.decode(reader, out, offset, offset + length) != offset + length)
+            throw new IOException("Error:Unexpected end of block.");
+        return contentBits - reader.bitsLeft;
+    }
+
+
+    /**
+     * @return number of bytes the record takes in the file
+     */
+    long recordLength() {
+        return RECORD_HEADER_LENGTH + bodyLength;
+    }
+
+    /**
+     * write the record of the block
+     *
+     * @param out DataOutput
+     * @throws IOException I/O
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeByte(type);
+        out.writeInt(originalLength);
+        out.writeInt(bodyLength);
+        out.write(body, 0, bodyLength);
+    }
+
+    /**
+     * check the block size read from the head of a block file, every buffer of a block is at most this size
+     *
+     * @param blockSize the block size read
+     * @return blockSize
+     * @throws IOException if it is not between 1 and HuffmanOutputStream.MAX_BLOCK_SIZE
+     */
+    static int checkBlockSize(int blockSize) throws IOException {
+        if (blockSize < 1 || blockSize > HuffmanOutputStream.MAX_BLOCK_SIZE)
+            throw new IOException("Error:Invalid block size in file.");
+        return blockSize;
+    }
+
+    /**
+     * @param blockSize the block size of the file
+     * @return the most bytes the body of a block can take: the longest code lengths header,
+     * then every byte of the block coded with the longest code
+     */
+    static long maxBodyLength(int blockSize) {
+        return HuffmanCanonicalCode.MAX_HEADER_LENGTH + ((long) blockSize * HuffmanCanonicalCode.MAX_LENGTH + 7) / 8;
+    }
+
+    /**
+     * read the next block record
+     *
+     * @param in        DataInput
+     * @param blockSize the block size of the file, checked with checkBlockSize
+     * @return HuffmanBlock, null if the END byte is read
+     * @throws IOException I/O, or if the record does not fit the block size
+     */
+    static HuffmanBlock read(DataInput in, int blockSize) throws IOException {
+        int type = in.readUnsignedByte();
+        if (type == END)
+            return null;
+
+        int originalLength = in.readInt();
+        int bodyLength = in.readInt();
+        if (originalLength < 0 || originalLength > blockSize || bodyLength < 0 || bodyLength > maxBodyLength(blockSize))
+            throw new IOException("Error:Invalid block in file.");
+
+        byte[] body = new byte[bodyLength];
+        in.readFully(body);
+        return new HuffmanBlock(type, originalLength, body, bodyLength);
+    }
+
+
+    /**
+     * read the block record at position of the channel, without moving the channel position,
+     * so many threads can read records of the same file
+     *
+     * @param channel   FileChannel of the file
+     * @param position  file offset of the record
+     * @param blockSize the block size of the file, checked with checkBlockSize
+     * @return HuffmanBlock
+     * @throws IOException I/O, or if there is no record at position, or it does not fit the block size or the file
+     */
+    static HuffmanBlock read(FileChannel channel, long position, int blockSize) throws IOException {
+        ByteBuffer header = HuffmanBlockIndex.readFully(channel, position, RECORD_HEADER_LENGTH);
+        int type = header.get() & 0xFF;
+        int originalLength = header.getInt();
+        int bodyLength = header.getInt();
+        if (type == END || originalLength < 0 || originalLength > blockSize || bodyLength < 0 || bodyLength > maxBodyLength(blockSize)
+                || bodyLength > channel.size() - position - RECORD_HEADER_LENGTH)
+            throw new IOException("Error:Invalid block in file.");
+
+        byte[] body = HuffmanBlockIndex.readFully(channel, position + RECORD_HEADER_LENGTH, bodyLength).array();
+        return new HuffmanBlock(type, originalLength, body, bodyLength);
+    }
+
+
+    /**
+     * ByteArrayOutputStream that gives its buffer without copying it
+     */
+    private static class BodyOutputStream extends ByteArrayOutputStream {
+
+        BodyOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package Huffman;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Class of the index at the end of a block .huff file, it holds the file offset of every block record
+ * and the number of bytes the block decodes to.
+ *
+ * The index is: the number of blocks (int), for every block its record offset (long) and original length (int),
+ * then the offset of the index itself (long) as the last 8 bytes of the file.
+ * the block size at the head of the file is read with the index, records are checked against it
+ */
+class HuffmanBlockIndex {
+
+    // number of bytes of every block entry
+    static final int ENTRY_LENGTH = 12;
+
+    // file offset of every block record
+    private long[] recordOffsets = new long[16];
+
+    // original length of every block
+    private int[] originalLengths = new int[16];
+
+    // number of blocks
+    private int size = 0;
+
+    // the block size of the file read, 0 for an index being written
+    private int blockSize = 0;
+
+
+    /**
+     * add the next block
+     *
+     * @param recordOffset   file offset of the block record
+     * @param originalLength number of bytes the block decodes to
+     */
+    void add(long recordOffset, int originalLength) {
+        if (size == recordOffsets.length) {
+            recordOffsets = Arrays.copyOf(recordOffsets, size * 2);
+            originalLengths = Arrays.copyOf(originalLengths, size * 2);
+        }
+        recordOffsets[size] = recordOffset;
+        originalLengths[size] = originalLength;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long recordOffset(int block) {
+        return recordOffsets[block];
+    }
+
+    int originalLength(int block) {
+        return originalLengths[block];
+    }
+
+    int blockSize() {
+        return blockSize;
+    }
+
+
+    /**
+     * write the index and its offset
+     *
+     * @param out         DataOutput
+     * @param indexOffset file offset the index is written at
+     * @throws IOException I/O
+     */
+    void write(DataOutput out, long indexOffset) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(recordOffsets[i]);
+            out.writeInt(originalLengths[i]);
+        }
+        out.writeLong(indexOffset);
+    }
+
+    /**
+     * read the index at the end of a block file, and the block size at its head
+     *
+     * @param channel FileChannel of the file
+     * @return HuffmanBlockIndex
+     * @throws IOException I/O, or if the index or the block size is not valid, or a block decodes to more than
+     *                     the block size, or its record is not between the block size and the index
+     */
+    static HuffmanBlockIndex read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HuffmanFormat.PREFIX_LENGTH + 4 + 12)
+            throw new IOException("Error:Could not read block index in file.");
+        int blockSize = HuffmanBlock.checkBlockSize(readFully(channel, HuffmanFormat.PREFIX_LENGTH, 4).getInt());
+
+        // the last 8 bytes are the offset of the index
+        long indexOffset = readFully(channel, size - 8, 8).getLong();
+        if (indexOffset < HuffmanFormat.PREFIX_LENGTH || indexOffset > size - 12)
+            throw new IOException("Error:Could not read block index in file.");
+
+        int blocks = readFully(channel, indexOffset, 4).getInt();
+        if (blocks < 0 || (long) blocks * ENTRY_LENGTH != size - 12 - indexOffset)
+            throw new IOException("Error:Could not read block index in file.");
+
+        ByteBuffer entries = readFully(channel, indexOffset + 4, blocks * ENTRY_LENGTH);
+        HuffmanBlockIndex index = new HuffmanBlockIndex();
+        index.blockSize = blockSize;
+        for (int i = 0; i < blocks; i++) {
+            long recordOffset = entries.getLong();
+            int originalLength = entries.getInt();
+            if (originalLength < 0 || originalLength > blockSize
+                    || recordOffset < HuffmanFormat.PREFIX_LENGTH + 4 || recordOffset >= indexOffset)
+                throw new IOException("Error:Invalid block index in file.");
+            index.add(recordOffset, originalLength);
+        }
+        return index;
+    }
+
+    /**
+     * read length bytes at position of the channel, without moving the channel position
+     *
+     * @return ByteBuffer ready to be read
+     * @throws IOException I/O, or if the file ends first
+     */
+    static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1)
+                throw new IOException("Error:Unexpected end of file.");
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
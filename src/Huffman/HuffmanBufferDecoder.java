@@ -0,0 +1,244 @@
+package Huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Class to decode a message in memory, from a ByteBuffer to a ByteBuffer, heap or direct, without files.
+ * a message is a canonical or stored .huff file, as HuffmanBufferEncoder writes them.
+ * src may hold only a part of the message and dst may be too small for the rest of it: the call returns
+ * when either one runs out, and the next call goes on where it stopped, the bytes consumed and produced are
+ * the moves of the positions of src and dst. the bytes after a message in src are left in it for the next message.
+ * a decoder is kept for many messages, one after the other: the header is read from the bytes of src into an array
+ * of the decoder, and the code and the table of every message are rebuilt in the same arrays, so no call allocates
+ * after the first message. a decoder is not thread safe, give every thread its own
+ *
+ * @see HuffmanBufferEncoder
+ * @see HuffmanBufferPool
+ */
+public class HuffmanBufferDecoder {
+
+    // number of bytes of the prefix and the original length, before the code lengths header
+    private static final int START_LENGTH = HuffmanFormat.PREFIX_LENGTH + Long.BYTES;
+
+    // the states of a message
+    private static final int HEADER = 0;
+    private static final int CONTENT = 1;
+    private static final int STORED = 2;
+
+    // where the message is
+    private int state = HEADER;
+
+    // the header bytes read, their number, and the number known to be needed so far
+    private final byte[] header = new byte[START_LENGTH + 1 + HuffmanCanonicalCode.MAX_LENGTH + 256];
+    private int headerLength;
+    private int headerNeeded = HuffmanFormat.PREFIX_LENGTH;
+
+    // the format of the message
+    private int version;
+
+    // number of bytes of the message still to decode
+    private long remaining;
+
+    // code and length of every byte value of the message
+    private final long[] codes = new long[256];
+    private final int[] lengths = new int[256];
+
+    // the table of the code of the message, kept for the next one
+    private HuffmanDecodingTable table;
+
+    // bits read and not decoded yet, the first bit is bit 0, fewer than 8 between calls
+    private long bitBuffer;
+    private int bitCount;
+
+
+    /**
+     * decode the message from src, or go on with the message started by an earlier call
+     *
+     * @param src the bytes of the message from its position, which is moved past the bytes consumed
+     * @param dst written from its position, which is moved past the bytes written
+     * @return true when the whole message is decoded, false if dst is full or src ends before it is.
+     * when dst still has room the bytes left in src are the start of a code, more bytes must be put after them
+     * @throws IOException if src is not a canonical or stored message, or holds bits that are not a code
+     */
+    public boolean decode(ByteBuffer src, ByteBuffer dst) throws IOException {
+        if (state == HEADER && !readHeader(src))
+            return false;
+
+        if (state == STORED) {
+            int count = (int) Math.min(remaining, Math.min(src.remaining(), dst.remaining()));
+            int limit = src.limit();
+            src.limit(src.position() + count);
+            dst.put(src);
+            src.limit(limit);
+            remaining -= count;
+            if (remaining > 0)
+                return false;
+            reset();
+            return true;
+        }
+
+        if (!decodeContent(src, dst))
+            return false;
+        reset();
+        return true;
+    }
+
+    /**
+     * drop the message started, the next call of decode starts a new one
+     */
+    public void reset() {
+        state = HEADER;
+        headerLength = 0;
+        headerNeeded = HuffmanFormat.PREFIX_LENGTH;
+        bitBuffer = 0;
+        bitCount = 0;
+    }
+
+
+    /**
+     * read the header bytes from src as they come, the number needed is known from the bytes before them
+     *
+     * @return true when the header is read and the table is built
+     */
+    private boolean readHeader(ByteBuffer src) throws IOException {
+        while (true) {
+            int count = Math.min(headerNeeded - headerLength, src.remaining());
+            src.get(header, headerLength, count);
+            headerLength += count;
+            if (headerLength < headerNeeded)
+                return false;
+
+            // the prefix
+            if (headerLength == HuffmanFormat.PREFIX_LENGTH) {
+                for (int i = 0; i < HuffmanFormat.MAGIC.length; i++) {
+                    if (header[i] != HuffmanFormat.MAGIC[i])
+                        throw new IOException("Error:Not a .huff message.");
+                }
+                version = header[HuffmanFormat.MAGIC.length];
+                if (version != HuffmanFormat.CANONICAL && version != HuffmanFormat.STORED)
+                    throw new IOException("Error:Only canonical and stored messages can be decoded from buffers.");
+                headerNeeded = START_LENGTH;
+                continue;
+            }
+
+            // the original length
+            if (headerLength == START_LENGTH) {
+                remaining = 0;
+                for (int i = HuffmanFormat.PREFIX_LENGTH; i < START_LENGTH; i++)
+                    remaining = remaining << 8 | (header[i] & 0xFF);
+                if (remaining < 0)
+                    throw new IOException("Error:Invalid original length in file.");
+                if (version == HuffmanFormat.STORED) {
+                    state = STORED;
+                    return true;
+                }
+                headerNeeded = START_LENGTH + 1;
+                continue;
+            }
+
+            // the longest code length, then the number of codes of every length
+            int maxLength = header[START_LENGTH] & 0xFF;
+            if (maxLength > HuffmanCanonicalCode.MAX_LENGTH)
+                throw new IOException("Error:Invalid code lengths in file.");
+            if (headerLength == START_LENGTH + 1 && maxLength > 0) {
+                headerNeeded += maxLength;
+                continue;
+            }
+            if (headerLength == START_LENGTH + 1 + maxLength && maxLength > 0) {
+                int numberOfSymbols = 0;
+                for (int length = 1; length <= maxLength; length++)
+                    numberOfSymbols += header[START_LENGTH + length] & 0xFF;
+                if ((header[START_LENGTH + maxLength] & 0xFF) == 0)
+                    numberOfSymbols += 256;
+                headerNeeded += Math.min(numberOfSymbols, 256);
+                continue;
+            }
+
+            // the whole header, the code checks it
+            if (HuffmanCanonicalCode.readHeader(header, START_LENGTH, lengths) == 0 && remaining > 0)
+                throw new IOException("Error:Invalid code lengths in file.");
+            HuffmanCanonicalCode.makeCodes(lengths, codes);
+            if (table == null)
+                table = new HuffmanDecodingTable(codes, lengths);
+            else
+                table.rebuild(codes, lengths);
+            state = CONTENT;
+            return true;
+        }
+    }
+
+    /**
+     * decode the content from src into dst, the bit buffer is filled a byte at a time up to 57 bits.
+     * the whole bytes left in the bit buffer are given back to src, so only the bits of a byte partly decoded
+     * are kept for the next call, and src is moved past the message exactly
+     *
+     * @return true when the whole message is decoded, false if dst is full or src ends
+     */
+    private boolean decodeContent(ByteBuffer src, ByteBuffer dst) throws IOException {
+        int[] table = this.table.table;
+        long bitBuffer = this.bitBuffer;
+        int bitCount = this.bitCount;
+        long remaining = this.remaining;
+
+        int i = src.position();
+        int end = src.limit();
+        while (remaining > 0 && dst.hasRemaining()) {
+            while (bitCount <= 56 && i < end) {
+                bitBuffer |= (long) (src.get(i++) & 0xFF) << bitCount;
+                bitCount += 8;
+            }
+
+            int entry = table[(int) bitBuffer & HuffmanDecodingTable.TABLE_MASK];
+            int symbols = entry >>> 26;
+
+            // the code is longer than the table, continue on the tree
+            if (symbols == 0) {
+                if (bitCount < HuffmanDecodingTable.TABLE_BITS)
+                    break;
+                if (entry == 0)
+                    throw new IOException("Error:Invalid code in file.");
+                int decoded = this.table.decodeLongCode(bitBuffer, bitCount, entry);
+                if (decoded < 0) {
+                    if (bitCount > 56)
+                        throw new IOException("Error:Code too long to decode from a buffer.");
+                    break;
+                }
+                dst.put((byte) decoded);
+                bitBuffer >>>= decoded >>> 8;
+                bitCount -= decoded >>> 8;
+                remaining--;
+                continue;
+            }
+
+            // the bits are short of the code, wait for more
+            int firstLength = (entry >>> 16) & 0x1F;
+            if (firstLength > bitCount)
+                break;
+
+            dst.put((byte) entry);
+            int bothLength = (entry >>> 21) & 0x1F;
+            if (symbols == 2 && remaining >= 2 && dst.hasRemaining() && bothLength <= bitCount) {
+                dst.put((byte) (entry >>> 8));
+                bitBuffer >>>= bothLength;
+                bitCount -= bothLength;
+                remaining -= 2;
+            } else {
+                bitBuffer >>>= firstLength;
+                bitCount -= firstLength;
+                remaining--;
+            }
+        }
+
+        // the bytes read ahead, all of them were read by this call as fewer than 8 bits were kept
+        int readAhead = bitCount / 8;
+        src.position(i - readAhead);
+        bitCount -= 8 * readAhead;
+        bitBuffer &= (1L << bitCount) - 1;
+
+        this.bitBuffer = bitBuffer;
+        this.bitCount = bitCount;
+        this.remaining = remaining;
+        return remaining == 0;
+    }
+}
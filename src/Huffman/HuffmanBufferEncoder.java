@@ -0,0 +1,256 @@
+package Huffman;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Class to encode bytes in memory, from a ByteBuffer to a ByteBuffer, heap or direct, without files.
+ * a message is all the bytes remaining in src at the first call, written in the canonical format,
+ * or in the stored format when coding would not make it smaller, so HuffmanDecoder decodes it as a file too.
+ * when dst is full the call returns, and the next call with the same src and more room in dst goes on,
+ * the bytes consumed and produced are the moves of the positions of src and dst.
+ * an encoder is kept for many messages, one after the other: the counts, the huffman tree, the code and the header
+ * of every message are made in the same arrays, so no call allocates. only a message whose huffman codes are longer
+ * than 32 bits, which takes millions of bytes of very skewed frequencies, has its lengths made by package-merge,
+ * which allocates. an encoder is not thread safe, give every thread its own
+ *
+ * @see HuffmanBufferDecoder
+ * @see HuffmanBufferPool
+ */
+public class HuffmanBufferEncoder {
+
+    // the longest code, so a code always fits in the bit buffer after the whole bytes are written out
+    private static final int MAX_CODE_LENGTH = 32;
+
+    // the states of a message
+    private static final int START = 0;
+    private static final int HEADER = 1;
+    private static final int CONTENT = 2;
+    private static final int PADDING = 3;
+    private static final int STORED = 4;
+
+    // where the message is
+    private int state = START;
+
+    // number of bytes of the prefix and the original length, before the code lengths header
+    private static final int START_LENGTH = HuffmanFormat.PREFIX_LENGTH + Long.BYTES;
+
+    // frequency of every byte value of the message, and the tables it is counted in
+    private final long[] histogram = new long[256];
+    private final long[][] countTables = new long[4][256];
+
+    // the byte values of the message sorted by frequency, then the weight and the parent of every node
+    // of its huffman tree, the leaves first
+    private final int[] sorted = new int[256];
+    private final long[] weights = new long[2 * 256 - 1];
+    private final int[] parents = new int[2 * 256 - 1];
+
+    // code and length of every byte value of the message
+    private final long[] codes = new long[256];
+    private final int[] lengths = new int[256];
+
+    // the prefix, the original length and the code lengths header of the message, its size,
+    // and how much of it was written
+    private final byte[] header = new byte[START_LENGTH + 1 + HuffmanCanonicalCode.MAX_LENGTH + 256];
+    private int headerSize;
+    private int headerPosition;
+
+    // bits coded and not written yet, the first bit is bit 0
+    private long bitBuffer;
+    private int bitCount;
+
+    // true if the message is stored, and the number of its bytes still to copy
+    private boolean stored;
+    private long storedRemaining;
+
+
+    /**
+     * encode the bytes remaining in src, or go on with the message started by an earlier call
+     *
+     * @param src the bytes to encode, from its position to its limit, all of them must be in it at the first call
+     *            and it must be passed again until the message is done
+     * @param dst written from its position, which is moved past the bytes written
+     * @return true when the whole message is written, false if dst is full before it is
+     */
+    public boolean encode(ByteBuffer src, ByteBuffer dst) {
+        if (state == START)
+            start(src);
+
+        if (state == HEADER) {
+            int count = Math.min(headerSize - headerPosition, dst.remaining());
+            dst.put(header, headerPosition, count);
+            headerPosition += count;
+            if (headerPosition < headerSize)
+                return false;
+            state = stored ? STORED : CONTENT;
+        }
+
+        if (state == STORED) {
+            int count = (int) Math.min(storedRemaining, dst.remaining());
+            int limit = src.limit();
+            src.limit(src.position() + count);
+            dst.put(src);
+            src.limit(limit);
+            storedRemaining -= count;
+            if (storedRemaining > 0)
+                return false;
+            state = START;
+            return true;
+        }
+
+        if (state == CONTENT) {
+            if (!encodeContent(src, dst))
+                return false;
+            state = PADDING;
+        }
+
+        // the last bits, padded with 0 to a whole byte
+        while (bitCount > 0) {
+            if (!dst.hasRemaining())
+                return false;
+            dst.put((byte) bitBuffer);
+            bitBuffer >>>= 8;
+            bitCount = Math.max(0, bitCount - 8);
+        }
+        state = START;
+        return true;
+    }
+
+    /**
+     * drop the message started, the next call of encode starts a new one
+     */
+    public void reset() {
+        state = START;
+        bitBuffer = 0;
+        bitCount = 0;
+    }
+
+
+    /**
+     * count the message, make its code and its header
+     */
+    private void start(ByteBuffer src) {
+        long originalLength = src.remaining();
+        Arrays.fill(histogram, 0);
+        HuffmanHistogram.count(src, histogram, countTables);
+
+        makeLengths();
+        int maxLength = HuffmanCanonicalCode.makeCodes(lengths, codes);
+        if (maxLength > MAX_CODE_LENGTH) {
+            System.arraycopy(HuffmanCanonicalCode.fromHistogram(histogram, MAX_CODE_LENGTH).getLengths(), 0, lengths, 0, 256);
+            maxLength = HuffmanCanonicalCode.makeCodes(lengths, codes);
+        }
+
+        // the code lengths header goes after the prefix and the original length, it is dropped if the message is stored
+        int end = HuffmanCanonicalCode.writeHeader(lengths, maxLength, header, START_LENGTH);
+        long contentBits = 0;
+        for (int b = 0; b < 256; b++)
+            contentBits += histogram[b] * lengths[b];
+        stored = HuffmanStored.isIncompressible(contentBits, end, originalLength);
+        headerSize = stored ? START_LENGTH : end;
+
+        System.arraycopy(HuffmanFormat.MAGIC, 0, header, 0, HuffmanFormat.MAGIC.length);
+        header[HuffmanFormat.MAGIC.length] = (byte) (stored ? HuffmanFormat.STORED : HuffmanFormat.CANONICAL);
+        for (int i = 0; i < Long.BYTES; i++)
+            header[HuffmanFormat.PREFIX_LENGTH + i] = (byte) (originalLength >>> (56 - 8 * i));
+
+        storedRemaining = originalLength;
+        headerPosition = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+        state = HEADER;
+    }
+
+    /**
+     * make the huffman code lengths of the histogram in the arrays of the encoder, the same lengths
+     * as HuffmanTree.build gives: the leaves sorted by frequency then byte value are one queue and the inner nodes
+     * are the other, a leaf is taken first when the weights tie. every node is made after its children,
+     * so the depths are given from the root down
+     */
+    private void makeLengths() {
+        Arrays.fill(lengths, 0);
+        int leaves = 0;
+        for (int b = 0; b < 256; b++) {
+            if (histogram[b] > 0) {
+                int i = leaves++;
+                for (; i > 0 && histogram[sorted[i - 1]] > histogram[b]; i--)
+                    sorted[i] = sorted[i - 1];
+                sorted[i] = b;
+            }
+        }
+        if (leaves == 0)
+            return;
+
+        // a tree of one leaf needs one bit to be written
+        if (leaves == 1) {
+            lengths[sorted[0]] = 1;
+            return;
+        }
+
+        for (int i = 0; i < leaves; i++)
+            weights[i] = histogram[sorted[i]];
+        int nodes = leaves;
+        int leaf = 0;
+        int inner = leaves;
+        while (nodes < 2 * leaves - 1) {
+            int first = leaf < leaves && (inner == nodes || weights[leaf] <= weights[inner]) ? leaf++ : inner++;
+            int second = leaf < leaves && (inner == nodes || weights[leaf] <= weights[inner]) ? leaf++ : inner++;
+            weights[nodes] = weights[first] + weights[second];
+            parents[first] = nodes;
+            parents[second] = nodes;
+            nodes++;
+        }
+
+        // the parent of every node is replaced by its depth, the parent was already replaced as it comes later
+        int root = nodes - 1;
+        parents[root] = 0;
+        for (int node = root - 1; node >= 0; node--)
+            parents[node] = parents[parents[node]] + 1;
+        for (int i = 0; i < leaves; i++)
+            lengths[sorted[i]] = parents[i];
+    }
+
+    /**
+     * code the bytes of src into dst, whole bytes are written when there are 32 bits, so a code always fits
+     *
+     * @return true when src is all coded, false if dst is full
+     */
+    private boolean encodeContent(ByteBuffer src, ByteBuffer dst) {
+        long[] codes = this.codes;
+        int[] lengths = this.lengths;
+        long bitBuffer = this.bitBuffer;
+        int bitCount = this.bitCount;
+        boolean done = true;
+
+        int i = src.position();
+        int end = src.limit();
+        while (i < end) {
+            if (bitCount >= 32) {
+                if (dst.remaining() >= 4) {
+                    dst.put((byte) bitBuffer).put((byte) (bitBuffer >>> 8)).put((byte) (bitBuffer >>> 16)).put((byte) (bitBuffer >>> 24));
+                    bitBuffer >>>= 32;
+                    bitCount -= 32;
+                } else {
+                    // write what fits, then wait for room
+                    while (bitCount >= 8 && dst.hasRemaining()) {
+                        dst.put((byte) bitBuffer);
+                        bitBuffer >>>= 8;
+                        bitCount -= 8;
+                    }
+                    if (bitCount >= 32) {
+                        done = false;
+                        break;
+                    }
+                }
+            }
+            int symbol = src.get(i++) & 0xFF;
+            bitBuffer |= codes[symbol] << bitCount;
+            bitCount += lengths[symbol];
+        }
+
+        src.position(i);
+        this.bitBuffer = bitBuffer;
+        this.bitCount = bitCount;
+        return done;
+    }
+}
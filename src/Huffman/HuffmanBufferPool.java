@@ -0,0 +1,88 @@
+package Huffman;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Class of a pool of buffers of one size for HuffmanBufferEncoder and HuffmanBufferDecoder,
+ * so a service that codes many messages takes its buffers from the pool and gives them back
+ * instead of allocating new ones. direct buffers are slow to allocate and are freed only by the GC,
+ * so they are worth keeping. buffers are made when the pool is empty and dropped when it is full,
+ * the pool is shared by threads
+ */
+public class HuffmanBufferPool {
+
+    // capacity of every buffer
+    private final int bufferSize;
+
+    // the most buffers kept
+    private final int capacity;
+
+    // make direct buffers, or heap buffers
+    private final boolean direct;
+
+    // the buffers given back and not taken again, an array deque does not allocate once it has grown
+    private final ArrayDeque<ByteBuffer> buffers;
+
+
+    /**
+     * @param bufferSize capacity of every buffer
+     * @param capacity   the most buffers kept
+     * @param direct     true for direct buffers, false for heap buffers
+     */
+    public HuffmanBufferPool(int bufferSize, int capacity, boolean direct) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("bufferSize must be at least 1");
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1");
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+        this.direct = direct;
+        buffers = new ArrayDeque<>(capacity);
+    }
+
+
+    /**
+     * @return a cleared buffer of bufferSize bytes, from the pool if it has one
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.pollLast();
+        }
+        if (buffer == null)
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * give a buffer back, it must not be used after
+     *
+     * @param buffer a buffer taken from this pool
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || buffer.isDirect() != direct)
+            throw new IllegalArgumentException("buffer is not from this pool");
+        synchronized (buffers) {
+            if (buffers.size() < capacity)
+                buffers.addLast(buffer);
+        }
+    }
+
+    /**
+     * @return number of buffers in the pool
+     */
+    public int size() {
+        synchronized (buffers) {
+            return buffers.size();
+        }
+    }
+
+    /**
+     * @return capacity of every buffer
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,410 @@
+package Huffman;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Class of canonical huffman codes, only the code length of every byte value is needed to rebuild them:
+ * codes are given in order of length then byte value, every code is the previous one + 1,
+ * shifted left when the length grows.
+ *
+ * The header written for the codes is:
+ * the maximum length (1 byte), the number of codes of every length from 1 to the maximum (1 byte each,
+ * 256 codes of the maximum length is written as 0), then the byte values in code order (1 byte each)
+ */
+public class HuffmanCanonicalCode {
+
+    // codes are kept in a long, so no code can be longer
+    public static final int MAX_LENGTH = 64;
+
+    // the smallest length limit, 8 bits always give all 256 byte values a code
+    public static final int MIN_LENGTH_LIMIT = 8;
+
+    // the longest header: the maximum length, a count for every length up to MAX_LENGTH, and all 256 byte values
+    static final int MAX_HEADER_LENGTH = 1 + MAX_LENGTH + 256;
+
+    // code length of every byte value, 0 if the byte value has no code
+    private final int[] lengths;
+
+    // code of every byte value, first bit of the code is bit 0, ready to be written by HuffmanBitWriter
+    private final long[] codes = new long[256];
+
+    // byte values in code order
+    private final int[] symbols;
+
+
+    /**
+     * make the canonical codes of the given code lengths
+     *
+     * @param lengths int[256] code length of every byte value
+     */
+    public HuffmanCanonicalCode(int[] lengths) {
+        this.lengths = lengths.clone();
+
+        // number of codes of every length
+        int[] counts = new int[MAX_LENGTH + 1];
+        int numberOfSymbols = 0;
+        for (int length : this.lengths) {
+            if (length > 0) {
+                counts[length]++;
+                numberOfSymbols++;
+            }
+        }
+
+        // the byte values in order of length, then value
+        symbols = new int[numberOfSymbols];
+        int[] offsets = new int[MAX_LENGTH + 2];
+        for (int length = 1; length <= MAX_LENGTH; length++)
+            offsets[length + 1] = offsets[length] + counts[length];
+        for (int b = 0; b < 256; b++) {
+            if (this.lengths[b] > 0)
+                symbols[offsets[this.lengths[b]]++] = b;
+        }
+
+        // give the codes, counting up and shifting left on every new length
+        long code = 0;
+        int length = 0;
+        for (int symbol : symbols) {
+            code <<= this.lengths[symbol] - length;
+            length = this.lengths[symbol];
+            codes[symbol] = reverse(code, length);
+            code++;
+        }
+    }
+
+    /**
+     * make the canonical codes of the huffman tree of the byte frequencies
+     *
+     * @param histogram long[256] frequency of every byte value
+     * @return HuffmanCanonicalCode, without codes if there are no bytes
+     * @throws IllegalStateException if a code is longer than MAX_LENGTH, which takes trillions of bytes,
+     *                               fromHistogram(histogram, MAX_LENGTH) limits them
+     */
+    public static HuffmanCanonicalCode fromHistogram(long[] histogram) {
+        HuffmanTree tree = HuffmanTree.build(histogram);
+        return tree == null ? new HuffmanCanonicalCode(new int[256]) : fromTree(tree);
+    }
+
+    /**
+     * make the canonical codes of the byte frequencies with no code longer than maxLength.
+     * the huffman code is used when it is short enough, otherwise the lengths are given by package-merge,
+     * which are the best lengths under the limit
+     *
+     * @param histogram long[256] frequency of every byte value
+     * @param maxLength the longest code allowed, from MIN_LENGTH_LIMIT to MAX_LENGTH
+     * @return HuffmanCanonicalCode, without codes if there are no bytes
+     */
+    public static HuffmanCanonicalCode fromHistogram(long[] histogram, int maxLength) {
+        if (maxLength < MIN_LENGTH_LIMIT || maxLength > MAX_LENGTH)
+            throw new IllegalArgumentException("maxLength must be between " + MIN_LENGTH_LIMIT + " and " + MAX_LENGTH);
+
+        // the depth of the tree is its longest code
+        HuffmanTree tree = HuffmanTree.build(histogram);
+        if (tree == null)
+            return new HuffmanCanonicalCode(new int[256]);
+        if (tree.getDepth() <= maxLength)
+            return fromTree(tree);
+        return new HuffmanCanonicalCode(packageMerge(histogram, maxLength));
+    }
+
+    /**
+     * make the canonical codes that have the same lengths as the codes of a huffman tree
+     *
+     * @param tree HuffmanTree
+     * @return HuffmanCanonicalCode
+     */
+    public static HuffmanCanonicalCode fromTree(HuffmanTree tree) {
+        int[] lengths = new int[256];
+        tree.makeCodes(new long[256], lengths);
+
+        // a tree of one leaf gives a code of length 0, it needs one bit to be written
+        if (tree.isLeaf(tree.getRoot()))
+            lengths[tree.getSymbol(tree.getRoot())] = 1;
+
+        return new HuffmanCanonicalCode(lengths);
+    }
+
+
+    /**
+     * @return long[256] the code of every byte value, first bit of the code is bit 0
+     */
+    public long[] getCodes() {
+        return codes;
+    }
+
+    /**
+     * @return int[256] the code length of every byte value
+     */
+    public int[] getLengths() {
+        return lengths;
+    }
+
+    /**
+     * @return the length of the longest code, 0 without codes
+     */
+    public int getMaxLength() {
+        return symbols.length == 0 ? 0 : lengths[symbols[symbols.length - 1]];
+    }
+
+    /**
+     * @return number of bytes taken by the header
+     */
+    public int headerLength() {
+        return 1 + getMaxLength() + symbols.length;
+    }
+
+    /**
+     * @param histogram long[256] frequency of every byte value
+     * @return number of bits the codes take to encode bytes of this frequency
+     */
+    public long encodedBits(long[] histogram) {
+        long bits = 0;
+        for (int b = 0; b < 256; b++)
+            bits += histogram[b] * lengths[b];
+        return bits;
+    }
+
+
+    /**
+     * write the code lengths header
+     *
+     * @param out DataOutput
+     * @throws IOException I/O
+     */
+    public void write(DataOutput out) throws IOException {
+        int maxLength = getMaxLength();
+        out.writeByte(maxLength);
+
+        // number of codes of every length, 256 fits only in the maximum length and is written as 0
+        int[] counts = new int[maxLength + 1];
+        for (int symbol : symbols)
+            counts[lengths[symbol]]++;
+        for (int length = 1; length <= maxLength; length++)
+            out.writeByte(counts[length]);
+
+        for (int symbol : symbols)
+            out.writeByte(symbol);
+    }
+
+    /**
+     * read a code lengths header
+     *
+     * @param in DataInput
+     * @return HuffmanCanonicalCode
+     * @throws IOException I/O, or if the lengths are not a valid prefix code
+     */
+    public static HuffmanCanonicalCode read(DataInput in) throws IOException {
+        int maxLength = in.readUnsignedByte();
+        if (maxLength > MAX_LENGTH)
+            throw new IOException("Error:Invalid code lengths in file.");
+
+        int[] counts = new int[maxLength + 1];
+        int numberOfSymbols = 0;
+        for (int length = 1; length <= maxLength; length++) {
+            counts[length] = in.readUnsignedByte();
+            numberOfSymbols += counts[length];
+        }
+        if (maxLength > 0 && counts[maxLength] == 0) {
+            counts[maxLength] = 256;
+            numberOfSymbols += 256;
+        }
+        if (numberOfSymbols > 256)
+            throw new IOException("Error:Invalid code lengths in file.");
+
+        // the symbols come in code order, so their lengths are known from the counts
+        int[] lengths = new int[256];
+        for (int length = 1; length <= maxLength; length++) {
+            for (int i = 0; i < counts[length]; i++) {
+                int symbol = in.readUnsignedByte();
+                if (lengths[symbol] != 0)
+                    throw new IOException("Error:Invalid code lengths in file.");
+                lengths[symbol] = length;
+            }
+        }
+
+        // the codes must not overflow the code space
+        double space = 0;
+        for (int length = 1; length <= maxLength; length++)
+            space += counts[length] / Math.pow(2, length);
+        if (space > 1)
+            throw new IOException("Error:Invalid code lengths in file.");
+
+        return new HuffmanCanonicalCode(lengths);
+    }
+
+
+    /**
+     * give the canonical codes of the code lengths into an array kept by the caller, without allocating
+     *
+     * @param lengths int[256] code length of every byte value, at most MAX_LENGTH, 0 if the byte value has no code
+     * @param codes   long[256] the code of every byte value is written to it, 0 if it has no code
+     * @return the length of the longest code, 0 without codes
+     */
+    static int makeCodes(int[] lengths, long[] codes) {
+        int maxLength = 0;
+        for (int length : lengths)
+            maxLength = Math.max(maxLength, length);
+
+        long code = 0;
+        int previous = 0;
+        for (int length = 1; length <= maxLength; length++) {
+            for (int b = 0; b < 256; b++) {
+                if (lengths[b] != length)
+                    continue;
+                code <<= length - previous;
+                previous = length;
+                codes[b] = reverse(code, length);
+                code++;
+            }
+        }
+        for (int b = 0; b < 256; b++) {
+            if (lengths[b] == 0)
+                codes[b] = 0;
+        }
+        return maxLength;
+    }
+
+    /**
+     * write the code lengths header of the lengths into an array, the same bytes as write
+     *
+     * @param lengths   int[256] code length of every byte value, made by makeCodes
+     * @param maxLength the length of the longest code
+     * @param out       array with room for 1 + maxLength + 256 bytes from offset
+     * @param offset    index of the first byte to write
+     * @return index after the last byte written
+     */
+    static int writeHeader(int[] lengths, int maxLength, byte[] out, int offset) {
+        out[offset] = (byte) maxLength;
+
+        // the byte values in code order after the counts, the count of a length is known once its values are written
+        int position = offset + 1 + maxLength;
+        for (int length = 1; length <= maxLength; length++) {
+            int count = 0;
+            for (int b = 0; b < 256; b++) {
+                if (lengths[b] == length) {
+                    out[position++] = (byte) b;
+                    count++;
+                }
+            }
+            // 256 fits only in the maximum length and is written as 0
+            out[offset + length] = (byte) count;
+        }
+        return position;
+    }
+
+    /**
+     * read a code lengths header from an array into an array kept by the caller, with the checks of read
+     *
+     * @param in      the bytes of the whole header from offset
+     * @param offset  index of the first byte of the header
+     * @param lengths int[256] the code length of every byte value is written to it
+     * @return the length of the longest code, 0 without codes
+     * @throws IOException if the lengths are not a valid prefix code
+     */
+    static int readHeader(byte[] in, int offset, int[] lengths) throws IOException {
+        int maxLength = in[offset] & 0xFF;
+        if (maxLength > MAX_LENGTH)
+            throw new IOException("Error:Invalid code lengths in file.");
+
+        Arrays.fill(lengths, 0);
+        int position = offset + 1 + maxLength;
+        double space = 0;
+        for (int length = 1; length <= maxLength; length++) {
+            int count = in[offset + length] & 0xFF;
+            if (count == 0 && length == maxLength)
+                count = 256;
+            if (position + count > offset + 1 + maxLength + 256)
+                throw new IOException("Error:Invalid code lengths in file.");
+            for (int i = 0; i < count; i++) {
+                int symbol = in[position++] & 0xFF;
+                if (lengths[symbol] != 0)
+                    throw new IOException("Error:Invalid code lengths in file.");
+                lengths[symbol] = length;
+            }
+            space += count / Math.pow(2, length);
+        }
+
+        // the codes must not overflow the code space
+        if (space > 1)
+            throw new IOException("Error:Invalid code lengths in file.");
+        return maxLength;
+    }
+
+
+    /**
+     * the package-merge algorithm: every level, from maxLength up to 1, is the list of the byte values
+     * merged in order of weight with the packages of two items of the level below.
+     * the first 2n - 2 items of level 1 make the code, and every byte value gets 1 bit of length for every level
+     * it is among the chosen items. the chosen items of a level are always its first ones, and the chosen
+     * packages of a level choose the first items of the level below
+     *
+     * @param histogram long[256] frequency of every byte value, at least maxLength + 1 of them not 0
+     * @param maxLength the longest code allowed, 2 ^ maxLength at least the number of byte values
+     * @return int[256] code length of every byte value
+     */
+    private static int[] packageMerge(long[] histogram, int maxLength) {
+
+        // the byte values that occur, in order of frequency then value
+        Integer[] sorted = new Integer[256];
+        int n = 0;
+        for (int b = 0; b < 256; b++) {
+            if (histogram[b] > 0)
+                sorted[n++] = b;
+        }
+        Arrays.sort(sorted, 0, n, (a, b) -> histogram[a] != histogram[b] ? Long.compare(histogram[a], histogram[b]) : a - b);
+
+        long[] leaves = new long[n];
+        for (int i = 0; i < n; i++)
+            leaves[i] = histogram[sorted[i]];
+
+        // weight of every item of every level, and if it is a package or a byte value
+        long[][] weights = new long[maxLength + 1][];
+        boolean[][] packaged = new boolean[maxLength + 1][];
+        weights[maxLength] = leaves;
+        packaged[maxLength] = new boolean[n];
+
+        for (int level = maxLength - 1; level >= 1; level--) {
+            long[] below = weights[level + 1];
+            int packages = below.length / 2;
+            weights[level] = new long[n + packages];
+            packaged[level] = new boolean[n + packages];
+
+            // merge, a byte value comes before a package of the same weight
+            int leaf = 0, pack = 0;
+            for (int i = 0; i < n + packages; i++) {
+                long packageWeight = pack < packages ? below[2 * pack] + below[2 * pack + 1] : Long.MAX_VALUE;
+                if (leaf < n && leaves[leaf] <= packageWeight) {
+                    weights[level][i] = leaves[leaf++];
+                } else {
+                    weights[level][i] = packageWeight;
+                    packaged[level][i] = true;
+                    pack++;
+                }
+            }
+        }
+
+        // walk down the levels through the chosen items
+        int[] lengths = new int[256];
+        int chosen = 2 * n - 2;
+        for (int level = 1; level <= maxLength && chosen > 0; level++) {
+            int leaf = 0, packages = 0;
+            for (int i = 0; i < chosen; i++) {
+                if (packaged[level][i])
+                    packages++;
+                else
+                    lengths[sorted[leaf++]]++;
+            }
+            chosen = 2 * packages;
+        }
+        return lengths;
+    }
+
+    /**
+     * @return the lowest length bits of code in the opposite order
+     */
+    private static long reverse(long code, int length) {
+        return Long.reverse(code) >>> (64 - length);
+    }
+}
@@ -0,0 +1,316 @@
+package Huffman;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class of the order-1 context model: the previous byte of every byte is its context, and every context
+ * is coded with the code of its group of contexts. the contexts are grouped so that the bits of the content
+ * and of the headers are the fewest: every context seen starts as a group of its own, then the two groups whose
+ * merged code costs the least are merged, until no merge saves bits and there are at most MAX_TABLES groups.
+ * the cost of a group is the entropy of its byte frequencies plus the size of its header.
+ * the context of the first byte is 0.
+ *
+ * The header written for the model is:
+ * the number of codes (1 byte), when more than one the code of every context as 4 bits,
+ * two contexts a byte, lower context in the low bits, then the code lengths header of every code
+ *
+ * @see HuffmanContextTable
+ */
+class HuffmanContextModel {
+
+    // the most codes a model has, so the code of a context fits in 4 bits
+    static final int MAX_TABLES = 16;
+
+    // number of bytes of the map of contexts to codes
+    private static final int MAP_LENGTH = 128;
+
+    // count * ln(count) of every count below the size of the table, the counts of most groups,
+    // so the costs of the pairs of groups take no logarithm
+    private static final double[] X_LOG_X = new double[1 << 12];
+
+    static {
+        for (int count = 1; count < X_LOG_X.length; count++)
+            X_LOG_X[count] = count * Math.log(count);
+    }
+
+    // a group without bytes
+    private static final long[] EMPTY = new long[256];
+
+    // the code of every context
+    private final int[] map;
+
+    // the code of every group of contexts
+    private final HuffmanCanonicalCode[] codes;
+
+
+    /**
+     * @param map   int[256] index in codes of every context
+     * @param codes the code of every group of contexts
+     */
+    private HuffmanContextModel(int[] map, HuffmanCanonicalCode[] codes) {
+        this.map = map;
+        this.codes = codes;
+    }
+
+    /**
+     * group the contexts, and make the code of every group
+     *
+     * @param histogram long[256][256] frequency of every byte value after every previous byte value
+     * @param maxLength the longest code allowed
+     * @return HuffmanContextModel
+     */
+    static HuffmanContextModel fromHistogram(long[][] histogram, int maxLength) {
+
+        // every context seen is a group of its own
+        List<long[]> groups = new ArrayList<>();
+        List<List<Integer>> members = new ArrayList<>();
+        for (int context = 0; context < 256; context++) {
+            long total = 0;
+            for (long count : histogram[context])
+                total += count;
+            if (total > 0) {
+                groups.add(histogram[context].clone());
+                List<Integer> contexts = new ArrayList<>();
+                contexts.add(context);
+                members.add(contexts);
+            }
+        }
+
+        // a file without bytes has a single empty code
+        if (groups.isEmpty()) {
+            groups.add(new long[256]);
+            members.add(new ArrayList<>());
+        }
+
+        // cost of every group, and the cost saved by merging every two groups, i < j
+        int n = groups.size();
+        double[] costs = new double[n];
+        for (int i = 0; i < n; i++)
+            costs[i] = cost(groups.get(i));
+        double[][] deltas = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++)
+                deltas[i][j] = mergedCost(groups.get(i), groups.get(j)) - costs[i] - costs[j];
+        }
+
+        // the cheapest pair of every group with a later group, so a merge does not look at all the pairs
+        boolean[] merged = new boolean[n];
+        int[] partners = new int[n];
+        for (int i = 0; i < n; i++)
+            partners[i] = bestPartner(deltas, merged, i);
+
+        // merge the cheapest pair while it saves bits, or there are too many groups
+        int remaining = n;
+        while (remaining > 1) {
+            int bestI = -1;
+            for (int i = 0; i < n; i++) {
+                if (!merged[i] && partners[i] >= 0 && (bestI < 0 || deltas[i][partners[i]] < deltas[bestI][partners[bestI]]))
+                    bestI = i;
+            }
+            int bestJ = partners[bestI];
+            if (remaining <= MAX_TABLES && deltas[bestI][bestJ] >= 0)
+                break;
+
+            // merge j into i, then update the pairs of i
+            long[] group = groups.get(bestI);
+            long[] other = groups.get(bestJ);
+            for (int b = 0; b < 256; b++)
+                group[b] += other[b];
+            members.get(bestI).addAll(members.get(bestJ));
+            merged[bestJ] = true;
+            remaining--;
+
+            costs[bestI] = cost(group);
+            for (int k = 0; k < n; k++) {
+                if (k == bestI || merged[k])
+                    continue;
+                double delta = mergedCost(group, groups.get(k)) - costs[bestI] - costs[k];
+                if (k < bestI)
+                    deltas[k][bestI] = delta;
+                else
+                    deltas[bestI][k] = delta;
+            }
+
+            // the groups before i whose pair was with i or j look again, the others may now pair with i
+            for (int k = 0; k < bestI; k++) {
+                if (merged[k])
+                    continue;
+                int partner = partners[k];
+                if (partner == bestI || partner == bestJ)
+                    partners[k] = bestPartner(deltas, merged, k);
+                else if (deltas[k][bestI] < deltas[k][partner] || (deltas[k][bestI] == deltas[k][partner] && bestI < partner))
+                    partners[k] = bestI;
+            }
+            partners[bestI] = bestPartner(deltas, merged, bestI);
+            for (int k = bestI + 1; k < n; k++) {
+                if (!merged[k] && partners[k] == bestJ)
+                    partners[k] = bestPartner(deltas, merged, k);
+            }
+        }
+
+        // the map of several codes costs its bytes, one code for all the contexts may be smaller
+        long[] all = new long[256];
+        double groupsCost = MAP_LENGTH * 8;
+        for (int i = 0; i < n; i++) {
+            if (merged[i])
+                continue;
+            groupsCost += costs[i];
+            for (int b = 0; b < 256; b++)
+                all[b] += groups.get(i)[b];
+        }
+        if (remaining > 1 && cost(all) <= groupsCost)
+            return new HuffmanContextModel(new int[256], new HuffmanCanonicalCode[]{HuffmanCanonicalCode.fromHistogram(all, maxLength)});
+
+        // the contexts not seen take the first code, they are never coded
+        int[] map = new int[256];
+        List<HuffmanCanonicalCode> codes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (merged[i])
+                continue;
+            for (int context : members.get(i))
+                map[context] = codes.size();
+            codes.add(HuffmanCanonicalCode.fromHistogram(groups.get(i), maxLength));
+        }
+        return new HuffmanContextModel(map, codes.toArray(new HuffmanCanonicalCode[0]));
+    }
+
+    /**
+     * @return the group after i whose merge with i costs the least, the first one of the same cost, -1 for none
+     */
+    private static int bestPartner(double[][] deltas, boolean[] merged, int i) {
+        int best = -1;
+        for (int j = i + 1; j < deltas.length; j++) {
+            if (!merged[j] && (best < 0 || deltas[i][j] < deltas[i][best]))
+                best = j;
+        }
+        return best;
+    }
+
+    /**
+     * @return bits of the content of the group at its entropy, plus the bits of its header
+     */
+    private static double cost(long[] group) {
+        return mergedCost(group, EMPTY);
+    }
+
+    /**
+     * @return the cost of the group of the byte frequencies of two groups, without making the group
+     */
+    private static double mergedCost(long[] a, long[] b) {
+        long total = 0;
+        int distinct = 0;
+        double sum = 0;
+        for (int i = 0; i < 256; i++) {
+            long count = a[i] + b[i];
+            if (count > 0) {
+                total += count;
+                distinct++;
+                sum += xLogX(count);
+            }
+        }
+        if (total == 0)
+            return 0;
+
+        // the header has a byte for every symbol, and about 16 bytes of length counts
+        return (xLogX(total) - sum) / Math.log(2) + (distinct + 16) * 8;
+    }
+
+    private static double xLogX(long count) {
+        return count < X_LOG_X.length ? X_LOG_X[(int) count] : count * Math.log(count);
+    }
+
+
+    /**
+     * write the number of codes, the map of contexts to codes when there are several, and the codes
+     *
+     * @param out DataOutput
+     * @throws IOException I/O
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeByte(codes.length);
+        if (codes.length > 1) {
+            for (int context = 0; context < 256; context += 2)
+                out.writeByte(map[context] | (map[context + 1] << 4));
+        }
+        for (HuffmanCanonicalCode code : codes)
+            code.write(out);
+    }
+
+    /**
+     * read the header of a model
+     *
+     * @param in DataInput
+     * @return HuffmanContextModel
+     * @throws IOException I/O, or if the header is not valid
+     */
+    static HuffmanContextModel read(DataInput in) throws IOException {
+        int numberOfCodes = in.readUnsignedByte();
+        if (numberOfCodes < 1 || numberOfCodes > MAX_TABLES)
+            throw new IOException("Error:Invalid context codes in file.");
+
+        int[] map = new int[256];
+        if (numberOfCodes > 1) {
+            for (int context = 0; context < 256; context += 2) {
+                int b = in.readUnsignedByte();
+                map[context] = b & 0x0F;
+                map[context + 1] = b >>> 4;
+                if (map[context] >= numberOfCodes || map[context + 1] >= numberOfCodes)
+                    throw new IOException("Error:Invalid context codes in file.");
+            }
+        }
+
+        HuffmanCanonicalCode[] codes = new HuffmanCanonicalCode[numberOfCodes];
+        for (int i = 0; i < numberOfCodes; i++)
+            codes[i] = HuffmanCanonicalCode.read(in);
+        return new HuffmanContextModel(map, codes);
+    }
+
+    /**
+     * @return number of bytes taken by the header
+     */
+    int headerLength() {
+        int length = 1 + (codes.length > 1 ? MAP_LENGTH : 0);
+        for (HuffmanCanonicalCode code : codes)
+            length += code.headerLength();
+        return length;
+    }
+
+
+    /**
+     * @return int[256] index of the code of every context
+     */
+    int[] getMap() {
+        return map;
+    }
+
+    /**
+     * @return the code of every group of contexts
+     */
+    HuffmanCanonicalCode[] getCodes() {
+        return codes;
+    }
+
+    /**
+     * @return long[256][] the codes of every context, contexts of a group share the arrays
+     */
+    long[][] contextCodes() {
+        long[][] contextCodes = new long[256][];
+        for (int context = 0; context < 256; context++)
+            contextCodes[context] = codes[map[context]].getCodes();
+        return contextCodes;
+    }
+
+    /**
+     * @return int[256][] the code lengths of every context, contexts of a group share the arrays
+     */
+    int[][] contextLengths() {
+        int[][] contextLengths = new int[256][];
+        for (int context = 0; context < 256; context++)
+            contextLengths[context] = codes[map[context]].getLengths();
+        return contextLengths;
+    }
+}
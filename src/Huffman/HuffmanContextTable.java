@@ -0,0 +1,131 @@
+package Huffman;
+
+import java.io.IOException;
+
+/**
+ * Class to decode the content of an order-1 context model several bits at a time.
+ * every code has a HuffmanDecodingTable, and a table of its own whose second symbols are decoded with
+ * the code of the context made by the first symbol, so two symbols are still emitted by one probe
+ * as with a single code
+ *
+ * @see HuffmanContextModel
+ */
+class HuffmanContextTable {
+
+    // the table of the code of every context, contexts of a group share the tables
+    private final int[][] tables = new int[256][];
+
+    // the single code table of every context, to continue long codes on its tree
+    private final HuffmanDecodingTable[] singles = new HuffmanDecodingTable[256];
+
+    // the context of the next symbol, the previous symbol decoded
+    private int context = 0;
+
+
+    /**
+     * build the tables of the codes of a model
+     *
+     * @param model HuffmanContextModel
+     */
+    HuffmanContextTable(HuffmanContextModel model) {
+        HuffmanCanonicalCode[] codes = model.getCodes();
+        int[] map = model.getMap();
+
+        HuffmanDecodingTable[] groupSingles = new HuffmanDecodingTable[codes.length];
+        for (int i = 0; i < codes.length; i++)
+            groupSingles[i] = new HuffmanDecodingTable(codes[i].getCodes(), codes[i].getLengths());
+
+        // the table of every code, with the second symbol of an entry taken from the table of the first symbol
+        int[][] groupTables = new int[codes.length][];
+        for (int i = 0; i < codes.length; i++) {
+            int[] single = groupSingles[i].table;
+            int[] table = new int[single.length];
+            for (int index = 0; index < single.length; index++) {
+                int entry = single[index];
+                if (entry >>> 26 == 0) {
+                    table[index] = entry;
+                    continue;
+                }
+
+                int symbol = entry & 0xFF;
+                int length = (entry >>> 16) & 0x1F;
+                entry = symbol | (length << 16) | (length << 21) | (1 << 26);
+
+                // the second code must fit in the bits left of the index
+                if (length < HuffmanDecodingTable.TABLE_BITS) {
+                    int next = groupSingles[map[symbol]].table[index >>> length];
+                    int nextLength = (next >>> 16) & 0x1F;
+                    if (next >>> 26 != 0 && length + nextLength <= HuffmanDecodingTable.TABLE_BITS)
+                        entry = symbol | ((next & 0xFF) << 8) | (length << 16) | ((length + nextLength) << 21) | (2 << 26);
+                }
+                table[index] = entry;
+            }
+            groupTables[i] = table;
+        }
+
+        for (int context = 0; context < 256; context++) {
+            tables[context] = groupTables[map[context]];
+            singles[context] = groupSingles[map[context]];
+        }
+    }
+
+
+    /**
+     * decode symbols into out until it is full or the content ends, the context goes on from the last call
+     *
+     * @param reader  HuffmanBitReader over the content
+     * @param out     array to write the symbols to
+     * @param outPos  index of the first symbol to write
+     * @param outEnd  index after the last symbol to write
+     * @return index after the last symbol written
+     * @throws IOException I/O, or if the content holds bits that are not a code
+     */
+    int decode(HuffmanBitReader reader, byte[] out, int outPos, int outEnd) throws IOException {
+        int context = this.context;
+
+        while (outPos < outEnd) {
+
+            // make sure the buffer holds a whole table index, unless the content is ending
+            if (reader.bitCount < HuffmanDecodingTable.TABLE_BITS)
+                reader.refill();
+
+            long bitsLeft = reader.bitsLeft;
+            if (bitsLeft <= 0)
+                break;
+
+            int entry = tables[context][(int) reader.bitBuffer & HuffmanDecodingTable.TABLE_MASK];
+            int symbols = entry >>> 26;
+
+            // the code is longer than the table, continue on the tree of the context
+            if (symbols == 0) {
+                if (entry == 0)
+                    throw new IOException("Error:Invalid code in file.");
+                if (bitsLeft < HuffmanDecodingTable.TABLE_BITS || !singles[context].decodeLongCode(reader, entry, out, outPos))
+                    break;
+                context = out[outPos++] & 0xFF;
+                continue;
+            }
+
+            // the remaining bits are the padding of the last byte
+            int firstLength = (entry >>> 16) & 0x1F;
+            if (firstLength > bitsLeft)
+                break;
+
+            out[outPos++] = (byte) entry;
+            context = entry & 0xFF;
+
+            // emit the second symbol too, if there is room and it is part of the content
+            int bothLength = (entry >>> 21) & 0x1F;
+            if (symbols == 2 && outPos < outEnd && bothLength <= bitsLeft) {
+                out[outPos++] = (byte) (entry >>> 8);
+                context = (entry >>> 8) & 0xFF;
+                reader.skip(bothLength);
+            } else {
+                reader.skip(firstLength);
+            }
+        }
+
+        this.context = context;
+        return outPos;
+    }
+}
@@ -1,11 +1,30 @@
 package Huffman;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Stack;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by jihadbadran on 10/27/17.
@@ -14,7 +33,10 @@ import java.util.Stack;
 public class HuffmanDecoder {
 
     // constant SIZE of buffer that holds read and write data in file
-    private final int SIZE = 8 * 1024;
+    private static final int SIZE = 8 * 1024;
+
+    // the buffer the legacy encoder wrote its content in, the 1 bit after the content is not written when it ends one
+    private static final int LEGACY_BUFFER = 8 * 1024;
 
     // file that will be read
     private File inputFile;
@@ -22,12 +44,30 @@ public class HuffmanDecoder {
     // file that will be written
     private File outputFile;
 
-    // huffman tree object
-    private HuffmanTree huffmanTree = new HuffmanTree();
-
     // actual tree bit length, maximum 2559
     private int treeLength = 0;
 
+    // number of bytes before the content, the distinct bytes count and the tree
+    private int headerLength = 0;
+
+    // number of threads that decode the blocks of a block file
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    // read the file and write the decoded file through mapped windows instead of streams
+    private boolean memoryMapped = false;
+
+    // read the file and write the decoded file on their own threads, while the coder decodes
+    private boolean pipelined = false;
+
+    // given the metrics of every decode, null for none
+    private HuffmanMetricsListener metricsListener;
+
+    // told how much of the file is decoded, null for none
+    private HuffmanProgressListener progressListener;
+
+    // the dictionaries of files encoded with one, null if there are none
+    private HuffmanDictionaryCache dictionaries;
+
 
     /**
      * the only constructor
@@ -42,195 +82,725 @@ public class HuffmanDecoder {
 
 
     /**
-     * decode the file
+     * decode a stream that is not a file, such as a pipe: the adaptive, block and stored formats can be decoded as they are read
+     *
+     * @param in  stream of the .huff data
+     * @param out stream of the decoded bytes, it is flushed but not closed
+     * @throws IOException I/O, or if the stream is not in the adaptive, block or stored format
+     * @see HuffmanAdaptiveCoder
+     * @see HuffmanInputStream
+     */
+    public static void decode(InputStream in, OutputStream out) throws IOException {
+        PushbackInputStream inputStream = new PushbackInputStream(in, HuffmanFormat.PREFIX_LENGTH);
+        int version = HuffmanFormat.readVersion(inputStream);
+
+        if (version == HuffmanFormat.ADAPTIVE) {
+            HuffmanAdaptiveCoder.decode(inputStream, out);
+            return;
+        }
+
+        // a stored file is the original length then the bytes
+        byte[] bytes = new byte[SIZE];
+        int numberOfBytes;
+        if (version == HuffmanFormat.STORED) {
+            long remaining = new DataInputStream(inputStream).readLong();
+            while (remaining > 0 && (numberOfBytes = inputStream.read(bytes, 0, (int) Math.min(SIZE, remaining))) != -1) {
+                out.write(bytes, 0, numberOfBytes);
+                remaining -= numberOfBytes;
+            }
+            if (remaining != 0)
+                throw new IOException("Error:Unexpected end of file.");
+            out.flush();
+            return;
+        }
+        if (version != HuffmanFormat.BLOCKS)
+            throw new IOException("Error:Only adaptive, block and stored files can be decoded from a stream.");
+
+        // give the prefix back to the block stream
+        inputStream.unread(HuffmanFormat.prefix(version));
+        HuffmanInputStream blocks = new HuffmanInputStream(inputStream);
+        while ((numberOfBytes = blocks.read(bytes, 0, SIZE)) != -1)
+            out.write(bytes, 0, numberOfBytes);
+        out.flush();
+    }
+
+
+    /**
+     * @param threads number of threads that decode the blocks of a block file, 1 to decode them in order
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+        this.threads = threads;
+    }
+
+
+    /**
+     * map the file and the decoded file, which is sized up front from the original length in the header,
+     * the content bits are then read straight from the mapping. used for files coded with one canonical code
+     *
+     * @param memoryMapped true to map the files
+     * @see HuffmanMapping
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+
+    /**
+     * read the file ahead of the decoder on one thread and write the decoded file behind it on another,
+     * in large chunks through a bounded ring, so reading, decoding and writing overlap.
+     * used for the formats decoded from streams, stored files and block files decoded on a pool use their channels
+     *
+     * @param pipelined true to pipeline the streams of the file and the decoded file
+     * @see HuffmanPipeline
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+
+    /**
+     * @param metricsListener given the metrics of every decode when it completes, null for none
+     * @see HuffmanMetrics
+     */
+    public void setMetricsListener(HuffmanMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+
+    /**
+     * @param progressListener told how many bytes of the .huff file are decoded, on a decoding thread, null for none
+     */
+    public void setProgressListener(HuffmanProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+
+    /**
+     * @param dictionaries HuffmanDictionaryCache of the dictionaries files may be encoded with, it may be shared
+     * @see HuffmanFormat#DICTIONARY
+     */
+    public void setDictionaries(HuffmanDictionaryCache dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+
+    /**
+     * decode the file, in the format written by its version byte, or the legacy format if it has none,
+     * then give the metrics to the listener.
+     * interrupting the thread cancels the decode, and the part of the decoded file written is deleted
      *
      * @throws Exception
+     * @see HuffmanFormat
      */
     public void decode() throws Exception {
+        try {
+            decodeFile();
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            outputFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * decode the file to a stream instead of the decoded file, in any format, nothing is written to disk.
+     * the mapped, pipelined and parallel block decodes are for the decoded file, the formats are decoded in order,
+     * and the output file given to the constructor is not used, it may be null
+     *
+     * @param out stream of the decoded bytes, it is flushed but not closed
+     * @throws IOException I/O, or if the file is not valid
+     */
+    public void decode(OutputStream out) throws IOException {
+        HuffmanProgress progress = new HuffmanProgress(progressListener, inputFile.length());
+        try (PushbackInputStream inputStream = new PushbackInputStream(progress.wrap(new FileInputStream(inputFile)),
+                HuffmanFormat.PREFIX_LENGTH)) {
+            int version = HuffmanFormat.readVersion(inputStream);
+            HuffmanMetrics metrics = new HuffmanMetrics(true, version);
+
+            if (version == HuffmanFormat.LEGACY)
+                decodeLegacy(inputStream, out, metrics);
+            else if (version == HuffmanFormat.CANONICAL)
+                decodeCanonical(inputStream, out, metrics);
+            else if (version == HuffmanFormat.DICTIONARY)
+                decodeDictionary(inputStream, out, metrics);
+            else if (version == HuffmanFormat.CONTEXT)
+                decodeContext(inputStream, out, metrics);
+            else if (version == HuffmanFormat.INTERLEAVED)
+                decodeInterleaved(inputStream, out, metrics);
+            else if (version == HuffmanFormat.ARCHIVE)
+                throw new IOException("Error:Archives are extracted entry by entry.");
+            else {
+                // the stream formats read their version again
+                inputStream.unread(HuffmanFormat.prefix(version));
+                decode(inputStream, out);
+            }
+        }
+        out.flush();
+    }
 
-        // open a stream to read the file
-        FileInputStream inputStream = new FileInputStream(this.inputFile);
+    private void decodeFile() throws IOException {
+        long start = System.nanoTime();
+        HuffmanProgress progress = new HuffmanProgress(progressListener, inputFile.length());
+
+        // open a stream to read the file, the first bytes are read back if the file has no version
+        FileInputStream fileInputStream = new FileInputStream(this.inputFile);
+        PushbackInputStream inputStream = new PushbackInputStream(progress.wrap(fileInputStream), HuffmanFormat.PREFIX_LENGTH);
+
+        HuffmanMetrics metrics;
+        try {
+            int version = HuffmanFormat.readVersion(inputStream);
+            metrics = new HuffmanMetrics(true, version);
+            if (version == HuffmanFormat.ARCHIVE)
+                throw new IOException("Error:Archives are extracted entry by entry.");
+
+            // the mapped decoded file is written without a stream
+            if (version == HuffmanFormat.CANONICAL && memoryMapped) {
+                decodeCanonicalMapped(inputStream, fileInputStream.getChannel(), metrics, progress);
+            } else {
+                // formats that use the channels of the files are not pipelined, the others read and write through the stages
+                boolean streamed = pipelined && version != HuffmanFormat.STORED && !(version == HuffmanFormat.BLOCKS && threads > 1);
+
+                // the stream and the buffer
+                try (FileOutputStream writer = new FileOutputStream(this.outputFile, false);
+                     InputStream input = streamed ? new HuffmanPipeline.Input(inputStream) : inputStream;
+                     OutputStream output = streamed ? new HuffmanPipeline.Output(writer) : writer) {
+                    if (version == HuffmanFormat.LEGACY)
+                        decodeLegacy(input, output, metrics);
+                    else if (version == HuffmanFormat.CANONICAL)
+                        decodeCanonical(input, output, metrics);
+                    else if (version == HuffmanFormat.DICTIONARY)
+                        decodeDictionary(input, output, metrics);
+                    else if (version == HuffmanFormat.CONTEXT)
+                        decodeContext(input, output, metrics);
+                    else if (version == HuffmanFormat.INTERLEAVED)
+                        decodeInterleaved(input, output, metrics);
+                    else if (version == HuffmanFormat.STORED)
+                        decodeStored(inputStream, fileInputStream.getChannel(), writer.getChannel(), metrics, progress);
+                    else if (version == HuffmanFormat.ADAPTIVE)
+                        HuffmanAdaptiveCoder.decode(new BufferedInputStream(input, SIZE), new BufferedOutputStream(output, SIZE), metrics);
+                    else if (threads == 1)
+                        decodeBlocks(input, output, metrics);
+                    else
+                        decodeBlocksParallel(fileInputStream.getChannel(), writer.getChannel(), metrics, progress);
+                }
+            }
+        } finally {
+            // close streams
+            inputStream.close();
+        }
 
-        // the bytes array to hold at max the buffer size of data from file
-        byte[] bytes = new byte[SIZE];
+        metrics.setBytes(inputFile.length(), outputFile.length());
+        metrics.setTotalNanos(System.nanoTime() - start);
+        if (metricsListener != null)
+            metricsListener.completed(metrics);
+    }
 
-        // the stream and the buffer
-        FileOutputStream writer = new FileOutputStream(this.outputFile, false);
 
-        // buffer of data to be written
-        byte[] encodedData = new byte[SIZE];
+    /**
+     * decode the content of a legacy file, the header is the pre-order tree
+     *
+     * @param inputStream stream at the start of the file
+     * @param writer      stream of the decoded file
+     * @param metrics     HuffmanMetrics of the decode
+     * @throws IOException I/O
+     */
+    private void decodeLegacy(InputStream inputStream, OutputStream writer, HuffmanMetrics metrics) throws IOException {
+
+        long start = System.nanoTime();
+        BitSet treeBits = readHeaderFromFile(inputStream);
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
 
         // build the huffman tree from the header read from file
-        buildHuffmanTree(readHeaderFromFile(inputStream));
+        start = System.nanoTime();
+        HuffmanTree tree = HuffmanTree.fromPreorder(treeBits, treeLength);
+
+        // the code of a tree of one byte value has no bits, so the file does not tell how many bytes there are
+        if (tree.isLeaf(tree.getRoot()))
+            throw new IOException("Error:Legacy file of one byte value, its length is not in the file.");
 
-        // holds the number of bytes read from file
-        int temp;
+        // the content is every byte after the header but the last, which is the padding value
+        long contentBits = readLegacyContentBits(inputFile.length() - headerLength);
 
-        // make a cursor to traverse the huffman tree according to the code read, to encode content
-        HuffmanNode cursor = huffmanTree.getRoot();
+        // make a table from the tree to decode several bits at a time, and a reader of the content bits
+        HuffmanDecodingTable table = new HuffmanDecodingTable(tree);
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        start = System.nanoTime();
+        HuffmanBitReader reader = new HuffmanBitReader(inputStream, SIZE, contentBits);
+        long decodedLength = 0;
+
+        // buffer of data to be written
+        byte[] encodedData = new byte[SIZE];
 
         // counter for encoded bytes
-        int encodedDataCursor = 0;
-
-        // 2 bytes reserved to hold the last and before last bytes
-        byte lastContentByte = 0;          // last byte of content, that might be padded
-        byte Padding = 0;                  // the padding value
-
-        // loop through buffers of file
-        while ((temp = inputStream.read(bytes, 0, SIZE)) != -1) {
-
-            // check if this is the last buffer to read
-            // then store the last two bytes, because the last byte is the padding value
-            // and the byte before the last is the padded byte
-            if (temp < SIZE) {
-                Padding = bytes[temp - 1];
-                lastContentByte = bytes[temp - 2];
-                temp = temp - 2;
+        int encodedDataCursor;
+
+        // decode a buffer at a time, until the content ends
+        do {
+            encodedDataCursor = table.decode(reader, encodedData, 0, SIZE);
+
+            // if there is something to write, then write
+            if (encodedDataCursor > 0) {
+                writer.write(encodedData, 0, encodedDataCursor);
+                decodedLength += encodedDataCursor;
+                metrics.addFlushes(1);
             }
+        } while (encodedDataCursor == SIZE);
 
-            // loop through bytes of buffer
-            for (int i = 0; i < temp; i++) {
-                // loop through bits of current byte
-                for (int j = 1; j < 256; j <<= 1) {
-
-                    // navigate the cursor over tree according to bits
-                    // 0 to left, 1 to right
-                    if ((bytes[i] & j) == 0) {
-                        cursor = cursor.getLeft();
-                    } else {
-                        cursor = cursor.getRight();
-                    }
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(decodedLength, contentBits - reader.bitsLeft);
+    }
 
-                    // if leaf in tree is reached, then insert the byte value from leaf in encoded data buffer
-                    if (cursor.isLeaf()) {
-                        encodedData[encodedDataCursor++] = cursor.getC();
 
-                        // reset cursor to tree root
-                        cursor = huffmanTree.getRoot();
-                    }
+    /**
+     * decode the content of a canonical file, the header is the original length and the code lengths,
+     * the table is built from the lengths without a tree
+     *
+     * @param inputStream stream after the version byte
+     * @param writer      stream of the decoded file
+     * @param metrics     HuffmanMetrics of the decode
+     * @throws IOException I/O
+     * @see HuffmanCanonicalCode
+     */
+    private void decodeCanonical(InputStream inputStream, OutputStream writer, HuffmanMetrics metrics) throws IOException {
 
-                    // if writing buffer is full, then dump in file and reset
-                    if (encodedDataCursor == SIZE - 1) {
+        // read the original length and the code lengths
+        long start = System.nanoTime();
+        DataInputStream header = new DataInputStream(inputStream);
+        long originalLength = header.readLong();
+        HuffmanCanonicalCode code = HuffmanCanonicalCode.read(header);
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
 
-                        // write in file
-                        writer.write(encodedData, 0, encodedDataCursor);
+        // the content is every byte after the header
+        long contentLength = inputFile.length() - HuffmanFormat.PREFIX_LENGTH - 8 - code.headerLength();
 
-                        // reset buffer
-                        encodedData = new byte[SIZE];
+        start = System.nanoTime();
+        HuffmanDecodingTable table = new HuffmanDecodingTable(code.getCodes(), code.getLengths());
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
 
-                        // reset Buffer Indexer
-                        encodedDataCursor = 0;
-                    }
-                }
-            }
+        decodeContent(inputStream, writer, table, originalLength, contentLength, metrics);
+    }
 
-            // check if this is the last buffer to read
-            // then parse the last byte according to the padding value
-            if (temp < SIZE) {
-                // loop through bits of last byte, without padded 0s
-                for (int j = 1; j < (1 << (8 - Padding)); j <<= 1) {
-
-                    // keep navigating in tree
-                    if ((lastContentByte & j) == 0) {
-                        cursor = cursor.getLeft();
-                    } else
-                        cursor = cursor.getRight();
-
-                    // if leaf then decode and reset tree cursor
-                    if (cursor.isLeaf()) {
-                        encodedData[encodedDataCursor++] = cursor.getC();
-                        cursor = huffmanTree.getRoot();
-                    }
+    /**
+     * decode the content of a dictionary file, the header is the dictionary ID and the original length,
+     * the table of the dictionary is taken from the cache
+     *
+     * @param inputStream stream after the version byte
+     * @param writer      stream of the decoded file
+     * @param metrics     HuffmanMetrics of the decode
+     * @throws IOException I/O, or if the dictionary can not be found
+     * @see HuffmanDictionary
+     */
+    private void decodeDictionary(InputStream inputStream, OutputStream writer, HuffmanMetrics metrics) throws IOException {
 
-                }
+        // read the dictionary ID and the original length
+        long start = System.nanoTime();
+        DataInputStream header = new DataInputStream(inputStream);
+        int id = header.readInt();
+        long originalLength = header.readLong();
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
 
-                // if there is something to write, then write
-                if (encodedDataCursor > 0) {
-                    writer.write(encodedData, 0, encodedDataCursor);
-                }
-            }
+        if (dictionaries == null)
+            throw new IOException("Error:The file was encoded with a dictionary, and no dictionaries are given.");
+
+        // the table is built once for every dictionary loaded
+        start = System.nanoTime();
+        HuffmanDecodingTable table = dictionaries.get(id).getTable();
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        long contentLength = inputFile.length() - HuffmanFormat.PREFIX_LENGTH - 4 - 8;
+        decodeContent(inputStream, writer, table, originalLength, contentLength, metrics);
+    }
+
+    /**
+     * decode the original length of bytes from the content after the header
+     *
+     * @param inputStream    stream after the header
+     * @param writer         stream of the decoded file
+     * @param table          HuffmanDecodingTable of the code
+     * @param originalLength number of bytes to decode
+     * @param contentLength  number of bytes of the content
+     * @param metrics        HuffmanMetrics of the decode
+     * @throws IOException I/O, or if the content ends too early
+     */
+    private void decodeContent(InputStream inputStream, OutputStream writer, HuffmanDecodingTable table,
+                               long originalLength, long contentLength, HuffmanMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        HuffmanBitReader reader = new HuffmanBitReader(inputStream, SIZE, contentLength * 8);
 
+        // buffer of data to be written
+        byte[] decodedData = new byte[SIZE];
+
+        // decode a buffer at a time, until all the original bytes are written
+        long remaining = originalLength;
+        while (remaining > 0) {
+            int length = (int) Math.min(SIZE, remaining);
+            if (table.decode(reader, decodedData, 0, length) != length)
+                throw new IOException("Error:Unexpected end of file.");
+
+            writer.write(decodedData, 0, length);
+            remaining -= length;
+            metrics.addFlushes(1);
         }
 
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(originalLength, contentLength * 8 - reader.bitsLeft);
+    }
+
+    /**
+     * decode the content of a context file, the header is the original length and the context model,
+     * every byte is decoded with the table of the byte before it
+     *
+     * @param inputStream stream after the version byte
+     * @param writer      stream of the decoded file
+     * @param metrics     HuffmanMetrics of the decode
+     * @throws IOException I/O
+     * @see HuffmanContextModel
+     */
+    private void decodeContext(InputStream inputStream, OutputStream writer, HuffmanMetrics metrics) throws IOException {
+
+        // read the original length and the codes of the contexts
+        long start = System.nanoTime();
+        DataInputStream header = new DataInputStream(inputStream);
+        long originalLength = header.readLong();
+        HuffmanContextModel model = HuffmanContextModel.read(header);
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+        // the content is every byte after the header
+        long contentLength = inputFile.length() - HuffmanFormat.PREFIX_LENGTH - 8 - model.headerLength();
+
+        start = System.nanoTime();
+        HuffmanContextTable table = new HuffmanContextTable(model);
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        start = System.nanoTime();
+        HuffmanBitReader reader = new HuffmanBitReader(inputStream, SIZE, contentLength * 8);
 
-        // close streams
-        inputStream.close();
-        writer.close();
+        // buffer of data to be written
+        byte[] decodedData = new byte[SIZE];
+
+        // decode a buffer at a time, until all the original bytes are written
+        long remaining = originalLength;
+        while (remaining > 0) {
+            int length = (int) Math.min(SIZE, remaining);
+            if (table.decode(reader, decodedData, 0, length) != length)
+                throw new IOException("Error:Unexpected end of file.");
+
+            writer.write(decodedData, 0, length);
+            remaining -= length;
+            metrics.addFlushes(1);
+        }
+
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(originalLength, contentLength * 8 - reader.bitsLeft);
     }
 
 
     /**
-     * build the huffman tree from the header information as a BitSet
+     * decode the segments of an interleaved file, the header is the original length and the code lengths,
+     * the 4 streams of every segment are decoded in the same loop
      *
-     * @param treeBits BitSet, the header bits
-     * @see BitSet
+     * @param inputStream stream after the version byte
+     * @param writer      stream of the decoded file
+     * @param metrics     HuffmanMetrics of the decode
+     * @throws IOException I/O
+     * @see HuffmanInterleaved
      */
-    private void buildHuffmanTree(BitSet treeBits) {
-
-        // make a stack build the tree
-        Stack<HuffmanNode> stack = new Stack<>();
+    private void decodeInterleaved(InputStream inputStream, OutputStream writer, HuffmanMetrics metrics) throws IOException {
+
+        // read the original length and the code lengths
+        long start = System.nanoTime();
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream, SIZE));
+        long originalLength = input.readLong();
+        HuffmanCanonicalCode code = HuffmanCanonicalCode.read(input);
+        if (code.getMaxLength() > HuffmanInterleaved.MAX_CODE_LENGTH)
+            throw new IOException("Error:Invalid code lengths in file.");
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+        start = System.nanoTime();
+        int[] table = new HuffmanDecodingTable(code.getCodes(), code.getLengths()).table;
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        start = System.nanoTime();
+        byte[] buffer = null;
+        int[] starts = new int[HuffmanInterleaved.STREAMS + 1];
+        byte[] decodedData = new byte[HuffmanInterleaved.SEGMENT_SIZE];
+        long contentBytes = 0;
+
+        // decode a segment at a time, until all the original bytes are written
+        long remaining = originalLength;
+        while (remaining > 0) {
+            int length = (int) Math.min(HuffmanInterleaved.SEGMENT_SIZE, remaining);
+            buffer = HuffmanInterleaved.readSegment(input, buffer, starts);
+            HuffmanInterleaved.decodeSegment(table, buffer, starts, decodedData, length);
+
+            writer.write(decodedData, 0, length);
+            remaining -= length;
+            contentBytes += starts[HuffmanInterleaved.STREAMS];
+            metrics.addFlushes(1);
+        }
 
-        // make a root
-        HuffmanNode root = new HuffmanNode();
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(originalLength, contentBytes * 8);
+    }
 
-        // push the root in the stack
-        stack.push(root);
 
-        // make a current to hold the current
-        HuffmanNode curr;
+    /**
+     * copy the bytes of a stored file, the header is the original length
+     *
+     * @param inputStream stream after the version byte
+     * @param input       FileChannel of the file
+     * @param output      FileChannel of the decoded file
+     * @param metrics     HuffmanMetrics of the decode
+     * @param progress    HuffmanProgress of the decode, after the header
+     * @throws IOException I/O, or if the file is not as long as the header says
+     * @see HuffmanStored
+     */
+    private void decodeStored(InputStream inputStream, FileChannel input, FileChannel output, HuffmanMetrics metrics,
+                              HuffmanProgress progress) throws IOException {
+        long start = System.nanoTime();
+        long originalLength = new DataInputStream(inputStream).readLong();
+        long contentOffset = HuffmanFormat.PREFIX_LENGTH + 8;
+        if (input.size() - contentOffset != originalLength)
+            throw new IOException("Error:Unexpected end of file.");
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+        start = System.nanoTime();
+        HuffmanStored.copy(input, contentOffset, originalLength, output, progress);
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(originalLength, originalLength * 8);
+    }
 
-        // loop through bits in bitSet
-        for (int i = 0; i < treeLength; i++) {
-            // pop the stack and put in current
-            curr = stack.pop();
 
-            // if bit is 0 then build a subtree and push right and left of it to stack
-            if (!treeBits.get(i)) {
-                curr.setRight(new HuffmanNode());
-                curr.setLeft(new HuffmanNode());
+    /**
+     * decode the content of a canonical file from its mapping into the mapped decoded file,
+     * the decoded file is sized to the original length before it is mapped
+     *
+     * @param inputStream stream after the version byte
+     * @param input       FileChannel of the file
+     * @param metrics     HuffmanMetrics of the decode
+     * @param progress    HuffmanProgress of the decode, after the header
+     * @throws IOException I/O
+     * @see HuffmanMapping
+     */
+    private void decodeCanonicalMapped(InputStream inputStream, FileChannel input, HuffmanMetrics metrics,
+                                       HuffmanProgress progress) throws IOException {
+
+        // read the original length and the code lengths
+        long start = System.nanoTime();
+        DataInputStream header = new DataInputStream(inputStream);
+        long originalLength = header.readLong();
+        HuffmanCanonicalCode code = HuffmanCanonicalCode.read(header);
+        metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+        // the content is every byte after the header, the bits are read from the mapping
+        start = System.nanoTime();
+        long contentOffset = HuffmanFormat.PREFIX_LENGTH + 8 + code.headerLength();
+        HuffmanDecodingTable table = new HuffmanDecodingTable(code.getCodes(), code.getLengths());
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        start = System.nanoTime();
+        long contentBits = (input.size() - contentOffset) * 8;
+        HuffmanBitReader reader = new HuffmanBitReader(input, contentOffset, contentBits);
+
+        // buffer of decoded data, small enough to stay in cache until it is put in the mapping
+        byte[] decodedData = new byte[SIZE];
+
+        // content bytes told to the progress
+        long reported = 0;
+
+        try (RandomAccessFile output = new RandomAccessFile(this.outputFile, "rw")) {
+            output.setLength(originalLength);
+            FileChannel channel = output.getChannel();
+
+            for (long position = 0; position < originalLength; position += HuffmanMapping.WINDOW_SIZE) {
+                MappedByteBuffer window = HuffmanMapping.map(channel, FileChannel.MapMode.READ_WRITE, position, originalLength);
+                while (window.hasRemaining()) {
+                    int length = Math.min(SIZE, window.remaining());
+                    if (table.decode(reader, decodedData, 0, length) != length)
+                        throw new IOException("Error:Unexpected end of file.");
+                    window.put(decodedData, 0, length);
+                    metrics.addFlushes(1);
+                }
 
-                stack.push(curr.getRight());
-                stack.push(curr.getLeft());
+                // the content bytes read for this window
+                long contentRead = (contentBits - reader.bitsLeft) >>> 3;
+                progress.advance(contentRead - reported);
+                reported = contentRead;
             }
-            // if bit is 1, then make the current node a leaf, and put the byte value
-            else {
-                curr.setC(bitSetNextByte(treeBits, i + 1));
-                i += 8;
+        }
+
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(originalLength, contentBits - reader.bitsLeft);
+    }
+
+
+    /**
+     * decode the blocks of a block file one after the other, every block has its own code
+     *
+     * @param inputStream stream after the version byte
+     * @param writer      stream of the decoded file
+     * @param metrics     HuffmanMetrics of the decode
+     * @throws IOException I/O
+     * @see HuffmanBlock
+     */
+    private void decodeBlocks(InputStream inputStream, OutputStream writer, HuffmanMetrics metrics) throws IOException {
+
+        DataInputStream records = new DataInputStream(new BufferedInputStream(inputStream, SIZE));
+
+        // the block size, a record that decodes to more is not read
+        int blockSize = HuffmanBlock.checkBlockSize(records.readInt());
+
+        // buffer of data to be written
+        byte[] decodedData = new byte[blockSize];
+
+        // decode every record until the END byte
+        HuffmanBlock block;
+        while ((block = HuffmanBlock.read(records, blockSize)) != null) {
+            block.decode(decodedData, 0, metrics);
+            writer.write(decodedData, 0, block.originalLength);
+            metrics.addFlushes(1);
+        }
+    }
+
+
+    /**
+     * decode the blocks of a block file on a pool of threads,
+     * the block index gives where every record is and where its bytes go in the decoded file,
+     * so every thread reads its record and writes its bytes with positional channel operations.
+     * at most 2 blocks per thread are in memory at a time
+     *
+     * @param input    FileChannel of the block file
+     * @param output   FileChannel of the decoded file
+     * @param metrics  HuffmanMetrics of the decode, the blocks add to it from the pool
+     * @param progress HuffmanProgress of the decode, the blocks add to it from the pool
+     * @throws IOException I/O
+     * @see HuffmanBlockIndex
+     */
+    private void decodeBlocksParallel(FileChannel input, FileChannel output, HuffmanMetrics metrics,
+                                      HuffmanProgress progress) throws IOException {
+
+        HuffmanBlockIndex index = HuffmanBlockIndex.read(input);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        // a permit for every block in memory
+        Semaphore inFlight = new Semaphore(2 * threads);
+
+        // the first exception of a block, no more blocks are started after it
+        AtomicReference<IOException> failure = new AtomicReference<>();
+
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            long outputOffset = 0;
+            for (int i = 0; i < index.size() && failure.get() == null; i++) {
+                long recordOffset = index.recordOffset(i);
+                int originalLength = index.originalLength(i);
+                long position = outputOffset;
+                outputOffset += originalLength;
+
+                inFlight.acquire();
+                futures.add(pool.submit(() -> {
+                    try {
+                        HuffmanBlock block = HuffmanBlock.read(input, recordOffset, index.blockSize());
+                        if (block.originalLength != originalLength)
+                            throw new IOException("Error:Invalid block index in file.");
+
+                        byte[] decodedData = new byte[originalLength];
+                        block.decode(decodedData, 0, metrics);
+
+                        // write the block at its place in the decoded file
+                        ByteBuffer buffer = ByteBuffer.wrap(decodedData);
+                        while (buffer.hasRemaining())
+                            output.write(buffer, position + buffer.position());
+                        metrics.addFlushes(1);
+                        progress.advance(block.recordLength());
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
             }
+
+            // wait for every block
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding.");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
 
-        // put the root as class global huffman tree root
-        huffmanTree.setRoot(root);
+        if (failure.get() != null)
+            throw failure.get();
     }
 
 
     /**
-     * to get the next byte from a bitSet object,
-     * starting from the offset
+     * find where the content of a legacy file ends from its last 2 bytes. the encoder wrote a 1 bit after the content,
+     * then the padding value, 8 minus the number of content bits in the last byte, as the last byte of the file.
+     * a content ending on a whole byte has the 1 bit alone in a 0x01 byte and a padding of 8, except when it ends
+     * exactly where the encoder flushed its buffer of LEGACY_BUFFER bytes: the 1 bit was never written, the padding
+     * is 8, and the last byte is content. a 0x01 byte at the end of a whole buffer can be either one, it is not guessed
      *
-     * @param bitSet to get the next byte from
-     * @param offset the offset of the reading
-     * @return byte
+     * @param contentLength number of bytes after the header, the padding value included
+     * @return number of content bits
+     * @throws IOException I/O, or if the end of the content is not valid or can not be told
      */
-    private byte bitSetNextByte(BitSet bitSet, int offset) {
-        byte result = 0;
-        for (int i = offset; i < offset + 8; i++) {
-            result = (byte) (result << 1);
-            if (bitSet.get(i))
-                result |= 1;
+    private long readLegacyContentBits(long contentLength) throws IOException {
+        if (contentLength < 1)
+            throw new IOException("Error:Could not read header in file.");
+
+        int padding;
+        int last = -1;
+        try (RandomAccessFile file = new RandomAccessFile(this.inputFile, "r")) {
+            file.seek(file.length() - 1);
+            padding = file.read();
+            if (contentLength > 1) {
+                file.seek(file.length() - 2);
+                last = file.read();
+            }
         }
-        return result;
+        if (padding < 1 || padding > 8)
+            throw new IOException("Error:Invalid padding in file.");
+
+        // the bytes of the content, with the byte of the 1 bit if it was written
+        long bytes = contentLength - 1;
+        if (bytes == 0) {
+            if (padding != 8)
+                throw new IOException("Error:Invalid padding in file.");
+            return 0;
+        }
+        if (padding < 8)
+            return (bytes - 1) * 8 + (8 - padding);
+
+        boolean wholeBuffers = bytes % LEGACY_BUFFER == 0;
+        if (last != 0x01) {
+            if (!wholeBuffers)
+                throw new IOException("Error:Invalid padding in file.");
+            return bytes * 8;
+        }
+        if (wholeBuffers)
+            throw new IOException("Error:Could not tell where the content ends in file.");
+        return (bytes - 1) * 8;
     }
 
+
     /**
-     * read the header from FileInputStream given,
+     * read the header from InputStream given,
      *
-     * @param stream FileInputStream
+     * @param stream InputStream
      * @return BiSet
      * @throws Exception I/O
      * @see BitSet
      */
-    private BitSet readHeaderFromFile(FileInputStream stream) throws Exception {
+    private BitSet readHeaderFromFile(InputStream stream) throws IOException {
 
         // read the first byte, which is the number of distinct bytes used in encoded file
         int treeLength = Math.abs(stream.read());
@@ -244,6 +814,9 @@ public class HuffmanDecoder {
         int treeFullLength = (int) Math.ceil(treeLength / 8.0);
         int treePadding = treeLength % 8;
 
+        // the header is the distinct bytes count and the tree bytes
+        this.headerLength = 1 + treeFullLength;
+
         // a buffer to hold read data from file
         byte[] bytes = new byte[SIZE];
 
@@ -0,0 +1,302 @@
+package Huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Class to decode huffman codes several bits at a time,
+ * the next TABLE_BITS bits of the content index a table entry that holds the one or two symbols they start with,
+ * codes longer than TABLE_BITS continue bit by bit on a flat copy of the tree
+ *
+ * @see HuffmanBitReader
+ */
+class HuffmanDecodingTable {
+
+    // number of bits resolved by one table probe
+    static final int TABLE_BITS = 11;
+
+    static final int TABLE_MASK = (1 << TABLE_BITS) - 1;
+
+    // entry layout: bits 0-7 first symbol, 8-15 second symbol, 16-20 first code length,
+    // 21-25 length of both codes, 26-27 number of symbols.
+    // an entry with 0 symbols holds the tree node reached after TABLE_BITS bits (long code),
+    // and the entry 0 means that no code starts with these bits
+    final int[] table = new int[1 << TABLE_BITS];
+
+    // flat tree, children[2 * node] is the left (bit 0) child and children[2 * node + 1] the right (bit 1) child,
+    // a child >= 1 is an inner node index, a negative child is a leaf holding ~symbol, 0 is no child
+    private int[] children = new int[2];
+
+    // number of nodes in the flat tree
+    private int nodes = 1;
+
+
+    /**
+     * build the table of a huffman tree, of any depth
+     *
+     * @param tree HuffmanTree
+     */
+    HuffmanDecodingTable(HuffmanTree tree) {
+        flatten(tree);
+        buildTable();
+    }
+
+    /**
+     * build the table straight from codes, without making HuffmanNode objects
+     *
+     * @param codes   long[256] code of every byte value, first bit of the code is bit 0
+     * @param lengths int[256] code length of every byte value, 0 if it has no code
+     */
+    HuffmanDecodingTable(long[] codes, int[] lengths) {
+        for (int symbol = 0; symbol < 256; symbol++) {
+            if (lengths[symbol] > 0)
+                insert(codes[symbol], lengths[symbol], symbol);
+        }
+        buildTable();
+    }
+
+
+    /**
+     * build the table of other codes in the same arrays, so a table can be kept for many codes
+     *
+     * @param codes   long[256] code of every byte value, first bit of the code is bit 0
+     * @param lengths int[256] code length of every byte value, 0 if it has no code
+     */
+    void rebuild(long[] codes, int[] lengths) {
+        Arrays.fill(children, 0);
+        nodes = 1;
+        for (int symbol = 0; symbol < 256; symbol++) {
+            if (lengths[symbol] > 0)
+                insert(codes[symbol], lengths[symbol], symbol);
+        }
+        buildTable();
+    }
+
+
+    /**
+     * decode symbols into out until it is full or the content ends
+     *
+     * @param reader  HuffmanBitReader over the content
+     * @param out     array to write the symbols to
+     * @param outPos  index of the first symbol to write
+     * @param outEnd  index after the last symbol to write
+     * @return index after the last symbol written
+     * @throws IOException I/O, or if the content holds bits that are not a code
+     */
+    int decode(HuffmanBitReader reader, byte[] out, int outPos, int outEnd) throws IOException {
+
+        while (outPos < outEnd) {
+
+            // make sure the buffer holds a whole table index, unless the content is ending
+            if (reader.bitCount < TABLE_BITS)
+                reader.refill();
+
+            long bitsLeft = reader.bitsLeft;
+            if (bitsLeft <= 0)
+                break;
+
+            int entry = table[(int) reader.bitBuffer & TABLE_MASK];
+            int symbols = entry >>> 26;
+
+            // the code is longer than the table, continue on the tree
+            if (symbols == 0) {
+                if (entry == 0)
+                    throw new IOException("Error:Invalid code in file.");
+                if (bitsLeft < TABLE_BITS || !decodeLongCode(reader, entry, out, outPos))
+                    break;
+                outPos++;
+                continue;
+            }
+
+            // the remaining bits are the padding of the last byte
+            int firstLength = (entry >>> 16) & 0x1F;
+            if (firstLength > bitsLeft)
+                break;
+
+            out[outPos++] = (byte) entry;
+
+            // emit the second symbol too, if there is room and it is part of the content
+            int bothLength = (entry >>> 21) & 0x1F;
+            if (symbols == 2 && outPos < outEnd && bothLength <= bitsLeft) {
+                out[outPos++] = (byte) (entry >>> 8);
+                reader.skip(bothLength);
+            } else {
+                reader.skip(firstLength);
+            }
+        }
+
+        return outPos;
+    }
+
+
+    /**
+     * decode a code longer than TABLE_BITS, walking the flat tree from the node stored in the entry
+     *
+     * @return false if the content ended in the middle of the code
+     */
+    boolean decodeLongCode(HuffmanBitReader reader, int entry, byte[] out, int outPos) throws IOException {
+        reader.skip(TABLE_BITS);
+        int node = entry & 0xFFFF;
+
+        while (true) {
+            if (reader.bitCount == 0)
+                reader.refill();
+            if (reader.bitsLeft <= 0)
+                return false;
+
+            int child = children[2 * node + (int) (reader.bitBuffer & 1)];
+            reader.skip(1);
+
+            if (child < 0) {
+                out[outPos] = (byte) ~child;
+                return true;
+            }
+            if (child == 0)
+                throw new IOException("Error:Invalid code in file.");
+            node = child;
+        }
+    }
+
+
+    /**
+     * decode a code longer than TABLE_BITS from bits that are not in a reader
+     *
+     * @param bits     the next bits, the first bit is bit 0
+     * @param bitCount number of valid bits
+     * @param entry    the table entry of the first TABLE_BITS bits
+     * @return the symbol, with the code length from bit 8, -1 if the bits end before the code does
+     * @throws IOException if the bits are not a code
+     */
+    int decodeLongCode(long bits, int bitCount, int entry) throws IOException {
+        int node = entry & 0xFFFF;
+        for (int length = TABLE_BITS; length < bitCount; length++) {
+            int child = children[2 * node + (int) ((bits >>> length) & 1)];
+            if (child < 0)
+                return ~child | ((length + 1) << 8);
+            if (child == 0)
+                throw new IOException("Error:Invalid code in file.");
+            node = child;
+        }
+        return -1;
+    }
+
+
+    /**
+     * copy the tree to the flat children array, the inner nodes are numbered in the order they are reached
+     *
+     * @param tree HuffmanTree
+     */
+    private void flatten(HuffmanTree tree) {
+
+        // a tree made of one leaf has no codes, the table stays empty
+        if (tree.isLeaf(tree.getRoot()))
+            return;
+
+        // stack of the tree nodes to copy, with a parallel stack of their flat indices
+        int[] stack = new int[tree.size()];
+        int[] indices = new int[tree.size()];
+        int top = 0;
+        stack[top] = tree.getRoot();
+        indices[top++] = 0;
+
+        while (top > 0) {
+            int node = stack[--top];
+            int index = indices[top];
+
+            for (int bit = 0; bit < 2; bit++) {
+                int child = bit == 0 ? tree.getLeft(node) : tree.getRight(node);
+                if (tree.isLeaf(child)) {
+                    children[2 * index + bit] = ~tree.getSymbol(child);
+                } else {
+                    int childIndex = newNode();
+                    children[2 * index + bit] = childIndex;
+                    stack[top] = child;
+                    indices[top++] = childIndex;
+                }
+            }
+        }
+    }
+
+    /**
+     * add the path of a code to the flat tree
+     *
+     * @param code   the code, first bit is bit 0
+     * @param length the code length
+     * @param symbol the byte value of the code
+     */
+    private void insert(long code, int length, int symbol) {
+        int node = 0;
+        for (int i = 0; i < length - 1; i++) {
+            int slot = 2 * node + (int) ((code >>> i) & 1);
+            if (children[slot] == 0) {
+                int child = newNode();
+                children[slot] = child;
+            }
+            node = children[slot];
+        }
+        children[2 * node + (int) ((code >>> (length - 1)) & 1)] = ~symbol;
+    }
+
+    /**
+     * add an inner node to the flat tree
+     *
+     * @return index of the node
+     */
+    private int newNode() {
+        if (2 * nodes + 2 > children.length)
+            children = Arrays.copyOf(children, children.length * 2);
+        return nodes++;
+    }
+
+
+    /**
+     * fill every table entry by walking the flat tree with the bits of its index
+     */
+    private void buildTable() {
+        for (int index = 0; index <= TABLE_MASK; index++) {
+
+            // first symbol
+            int node = 0;
+            int length = 0;
+            int child = 0;
+            while (length < TABLE_BITS) {
+                child = children[2 * node + ((index >>> length) & 1)];
+                length++;
+                if (child <= 0)
+                    break;
+                node = child;
+            }
+
+            // no code starts with these bits
+            if (child == 0) {
+                table[index] = 0;
+                continue;
+            }
+
+            // the bits are a prefix of a long code, keep the node reached
+            if (child > 0) {
+                table[index] = child;
+                continue;
+            }
+
+            int entry = (~child) | (length << 16) | (length << 21) | (1 << 26);
+
+            // second symbol, if its whole code fits in the remaining bits
+            node = 0;
+            int total = length;
+            while (total < TABLE_BITS) {
+                int next = children[2 * node + ((index >>> total) & 1)];
+                total++;
+                if (next == 0)
+                    break;
+                if (next < 0) {
+                    entry = (~child) | ((~next) << 8) | (length << 16) | (total << 21) | (2 << 26);
+                    break;
+                }
+                node = next;
+            }
+
+            table[index] = entry;
+        }
+    }
+}
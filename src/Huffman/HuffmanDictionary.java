@@ -0,0 +1,150 @@
+package Huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Class of a code trained from sample files, for files too small to pay for their own header.
+ * a file encoded with a dictionary holds only its ID, the decoder loads the code from the dictionary file
+ * named by the ID, see HuffmanDictionaryCache.
+ * every byte value has a code, so any file can be encoded with any dictionary.
+ * the ID is the CRC-32 of the code lengths header, so a dictionary file that does not hold the code
+ * of its ID is never used
+ *
+ * @see HuffmanFormat#DICTIONARY
+ */
+public class HuffmanDictionary {
+
+    // the extension of dictionary files
+    public static final String EXTENSION = ".hdict";
+
+    // the ID written in the files encoded with it
+    private final int id;
+
+    // the trained code
+    private final HuffmanCanonicalCode code;
+
+    // the decoding table of the code, shared by every decode, it is only read
+    private final HuffmanDecodingTable table;
+
+
+    /**
+     * @param code HuffmanCanonicalCode that has a code for every byte value
+     * @throws IOException if a byte value has no code
+     */
+    HuffmanDictionary(HuffmanCanonicalCode code) throws IOException {
+        for (int length : code.getLengths()) {
+            if (length == 0)
+                throw new IOException("Error:A dictionary must have a code for every byte value.");
+        }
+        this.code = code;
+        this.id = checksum(header(code));
+        this.table = new HuffmanDecodingTable(code.getCodes(), code.getLengths());
+    }
+
+    /**
+     * train a dictionary on sample files, every byte value is counted once more than it is found
+     * so that it has a code even if the samples do not have it
+     *
+     * @param samples       the files the code is trained on
+     * @param maxCodeLength the longest code allowed, from 8 to 64
+     * @return HuffmanDictionary
+     * @throws IOException I/O
+     */
+    public static HuffmanDictionary train(List<File> samples, int maxCodeLength) throws IOException {
+        if (maxCodeLength < HuffmanCanonicalCode.MIN_LENGTH_LIMIT || maxCodeLength > HuffmanCanonicalCode.MAX_LENGTH)
+            throw new IllegalArgumentException("maxCodeLength must be between " + HuffmanCanonicalCode.MIN_LENGTH_LIMIT
+                    + " and " + HuffmanCanonicalCode.MAX_LENGTH);
+
+        long[] histogram = new long[256];
+        for (int b = 0; b < 256; b++)
+            histogram[b] = 1;
+
+        for (File sample : samples) {
+            long[] counts = HuffmanHistogram.count(sample);
+            for (int b = 0; b < 256; b++)
+                histogram[b] += counts[b];
+        }
+        return new HuffmanDictionary(HuffmanCanonicalCode.fromHistogram(histogram, maxCodeLength));
+    }
+
+    /**
+     * read a dictionary file
+     *
+     * @param file the dictionary file
+     * @return HuffmanDictionary
+     * @throws IOException I/O, or if the file does not hold a valid code
+     */
+    public static HuffmanDictionary read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return new HuffmanDictionary(HuffmanCanonicalCode.read(in));
+        }
+    }
+
+    /**
+     * write the dictionary file in a directory, named by the ID
+     *
+     * @param directory the directory of the dictionaries
+     * @return the file written
+     * @throws IOException I/O
+     */
+    public File save(File directory) throws IOException {
+        File file = new File(directory, fileName(id));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            code.write(out);
+        }
+        return file;
+    }
+
+    /**
+     * @param id the ID of a dictionary
+     * @return the name of its file, the ID in hexadecimal
+     */
+    static String fileName(int id) {
+        return String.format("%08x", id) + EXTENSION;
+    }
+
+
+    /**
+     * @return the ID written in the files encoded with the dictionary
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return HuffmanCanonicalCode of the dictionary
+     */
+    public HuffmanCanonicalCode getCode() {
+        return code;
+    }
+
+    HuffmanDecodingTable getTable() {
+        return table;
+    }
+
+
+    /**
+     * @return the code lengths header of the code
+     */
+    private static byte[] header(HuffmanCanonicalCode code) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(code.headerLength());
+        code.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+}
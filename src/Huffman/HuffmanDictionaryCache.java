@@ -0,0 +1,147 @@
+package Huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Class that keeps the dictionaries last used in memory, least recently used first out,
+ * a dictionary that is not kept is read from its file in the directory of the dictionaries.
+ * one cache can be shared by decoders on several threads, a file is read outside the lock by the first thread
+ * that needs it, and the other threads that need it wait for that read
+ *
+ * @see HuffmanDictionary
+ */
+public class HuffmanDictionaryCache {
+
+    // the directory of the dictionary files
+    private final File directory;
+
+    // the dictionaries kept, or being read, in order of use, the last used last
+    private final LinkedHashMap<Integer, Future<HuffmanDictionary>> dictionaries;
+
+    // number of dictionaries read from their files, and found in memory
+    private long loads = 0;
+    private long hits = 0;
+
+
+    /**
+     * @param directory the directory of the dictionary files
+     * @param capacity  the number of dictionaries kept in memory
+     */
+    public HuffmanDictionaryCache(File directory, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1");
+        this.directory = directory;
+
+        // access order, and the eldest is dropped when there are more than capacity
+        this.dictionaries = new LinkedHashMap<Integer, Future<HuffmanDictionary>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Future<HuffmanDictionary>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * the dictionary of an ID, from memory or from its file
+     *
+     * @param id the ID written in the encoded file
+     * @return HuffmanDictionary
+     * @throws IOException if there is no valid dictionary file of the ID
+     */
+    public HuffmanDictionary get(int id) throws IOException {
+        Future<HuffmanDictionary> dictionary;
+        FutureTask<HuffmanDictionary> load = null;
+        synchronized (this) {
+            dictionary = dictionaries.get(id);
+            if (dictionary != null) {
+                hits++;
+            } else {
+                load = new FutureTask<>(() -> read(id));
+                dictionaries.put(id, load);
+            }
+        }
+        if (load == null)
+            return await(dictionary);
+
+        // only this thread reads the file, the others wait for it in await
+        load.run();
+        synchronized (this) {
+            // a file that could not be read is tried again by the next get
+            if (isRead(load))
+                loads++;
+            else
+                dictionaries.remove(id, load);
+        }
+        return await(load);
+    }
+
+    /**
+     * @return number of dictionaries read from their files
+     */
+    public synchronized long getLoads() {
+        return loads;
+    }
+
+    /**
+     * @return number of dictionaries found in memory
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+
+    /**
+     * read the dictionary file of an ID
+     *
+     * @throws IOException if there is no valid dictionary file of the ID
+     */
+    private HuffmanDictionary read(int id) throws IOException {
+        File file = new File(directory, HuffmanDictionary.fileName(id));
+        if (!file.isFile())
+            throw new IOException("Error:Dictionary " + file.getName() + " not found.");
+
+        HuffmanDictionary dictionary = HuffmanDictionary.read(file);
+        if (dictionary.getId() != id)
+            throw new IOException("Error:Dictionary " + file.getName() + " does not match its ID.");
+        return dictionary;
+    }
+
+    /**
+     * @return true if the read of a dictionary is done and did not fail
+     */
+    private static boolean isRead(Future<HuffmanDictionary> load) {
+        try {
+            load.get();
+            return true;
+        } catch (ExecutionException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * wait for the read of a dictionary
+     *
+     * @throws IOException the exception of the read, or if the thread is interrupted
+     */
+    private static HuffmanDictionary await(Future<HuffmanDictionary> dictionary) throws IOException {
+        try {
+            return dictionary.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading a dictionary.");
+        }
+    }
+}
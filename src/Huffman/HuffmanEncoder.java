@@ -1,7 +1,16 @@
 package Huffman;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by jihadbadran on 10/21/17.
@@ -12,14 +21,14 @@ public class HuffmanEncoder {
 
     private int SIZE = 8 * 1024;
 
-    // HashMap to Store the byte-huffmanCode pairs
-    private HashMap<Byte, String> map = new HashMap<>();
+    // number of mapped bytes encoded between progress reports
+    private static final int PROGRESS_STEP = 1024 * 1024;
 
-    // number of distinct bytes used in the file
-    private int numberOfByteValuesUsed = 0;
+    // huffman code of every byte value, indexed by the unsigned byte, first bit of the code is bit 0
+    private long[] codes = new long[256];
 
-    // bitSet object that contains longs[] and manipulate its bits, will be used to manipulate bits
-    private BitSet bitSet = new BitSet();
+    // huffman code length of every byte value, 0 if the byte value is not in the file
+    private int[] lengths = new int[256];
 
     // the file that will be encoded
     private File sourceFile;
@@ -27,8 +36,38 @@ public class HuffmanEncoder {
     // the file that will be written
     private File distFile;
 
-    // the huffman tree that will be built
-    private HuffmanTree huffmanTree = new HuffmanTree();
+    // size of the blocks the file is cut into, 0 to encode the whole file with one code
+    private int blockSize = 0;
+
+    // number of threads that encode blocks
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    // read the file through mapped windows instead of a stream
+    private boolean memoryMapped = false;
+
+    // encode in one pass with codes rebuilt from the running counts
+    private boolean adaptive = false;
+
+    // the longest code allowed
+    private int maxCodeLength = HuffmanCanonicalCode.MAX_LENGTH;
+
+    // given the metrics of every encode, null for none
+    private HuffmanMetricsListener metricsListener;
+
+    // told how much of the file is encoded, null for none
+    private HuffmanProgressListener progressListener;
+
+    // the trained code the file is encoded with in one pass, null to count the file
+    private HuffmanDictionary dictionary;
+
+    // encode every byte with the code of the byte before it
+    private boolean contextModel = false;
+
+    // deal the bytes to 4 streams that are decoded side by side
+    private boolean interleaved = false;
+
+    // read the file and write the .huff file on their own threads, while the coder codes
+    private boolean pipelined = false;
 
 
     /**
@@ -44,215 +83,667 @@ public class HuffmanEncoder {
     }
 
     /**
-     * method to build MinHeap which is a PriorityQueue from a TreeMap
+     * cut the file into blocks that are encoded with their own codes on a pool of threads,
+     * every block is read once, so the file is not read twice as with one code
      *
-     * @param map that will be maped to the heap
-     * @return PriorityQueue
+     * @param blockSize size of the blocks, at most HuffmanOutputStream.MAX_BLOCK_SIZE, 0 to encode the whole file with one code
+     * @see HuffmanBlock
      */
-    private PriorityQueue<HuffmanNode> buildHeap(TreeMap<Byte, Integer> map) {
-        // make a new heap
-        PriorityQueue<HuffmanNode> heap = new PriorityQueue<>();
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 0 || blockSize > HuffmanOutputStream.MAX_BLOCK_SIZE)
+            throw new IllegalArgumentException("blockSize must be between 0 and " + HuffmanOutputStream.MAX_BLOCK_SIZE);
+        this.blockSize = blockSize;
+    }
 
-        // loop through map, and put in the heap
-        map.forEach((b, integer) -> heap.offer(new HuffmanNode(b, integer, null, null)));
+    /**
+     * @param threads number of threads that encode blocks
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+        this.threads = threads;
+    }
 
-        return heap;
+    /**
+     * read the file through mapped windows, the frequency count and the encoding loop then run over the mapping
+     * without copying the file to buffers, which is faster for large local files.
+     * used when the whole file is encoded with one code
+     *
+     * @param memoryMapped true to map the file
+     * @see HuffmanMapping
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
     }
 
     /**
-     * read the file, and compute the frequency of every byte value
+     * encode in the adaptive format, the file is read once and no tree is written,
+     * the codes are rebuilt from the counts of the bytes already encoded.
+     * the size of the codes is known only after coding, so a file they made larger is read again and stored
      *
-     * @return TreeMap
-     * @throws IOException I/O
+     * @param adaptive true for the adaptive format
+     * @see HuffmanAdaptiveCoder
      */
-    private TreeMap<Byte, Integer> readAndTreeMap() throws IOException {
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
 
-        // instantiate new TreeMap object
-        // the reason to use TreeMap not HashMap, is that TreeMap stores the records in ascending order of values
-        TreeMap<Byte, Integer> treeMap = new TreeMap<>();
+    /**
+     * limit the length of the codes, a shorter limit costs some compression but every code of 11 bits or less
+     * is decoded with one table lookup. not used by the adaptive format, whose codes are fixed by the format
+     *
+     * @param maxCodeLength the longest code allowed, from 8 to 64
+     * @see HuffmanCanonicalCode#fromHistogram(long[], int)
+     */
+    public void setMaxCodeLength(int maxCodeLength) {
+        if (maxCodeLength < HuffmanCanonicalCode.MIN_LENGTH_LIMIT || maxCodeLength > HuffmanCanonicalCode.MAX_LENGTH)
+            throw new IllegalArgumentException("maxCodeLength must be between " + HuffmanCanonicalCode.MIN_LENGTH_LIMIT
+                    + " and " + HuffmanCanonicalCode.MAX_LENGTH);
+        this.maxCodeLength = maxCodeLength;
+    }
 
-        // open a stream to read the file
-        BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(sourceFile));
+    /**
+     * @param metricsListener given the metrics of every encode when it completes, null for none
+     * @see HuffmanMetrics
+     */
+    public void setMetricsListener(HuffmanMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
 
-        // make a buffer, of size SIZE, see value of SIZE in class head
-        byte[] bytes = new byte[SIZE];
+    /**
+     * @param progressListener told how many bytes of the file are encoded, on the encoding thread, null for none
+     */
+    public void setProgressListener(HuffmanProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
 
-        // to store the number of read bytes from stream
-        int numberOfBytes;
+    /**
+     * encode with the code of a dictionary, the file is read once and only the ID of the dictionary is written,
+     * which is smaller and faster than a code of its own for small files like the samples of the dictionary
+     *
+     * @param dictionary HuffmanDictionary, null to encode with a code of the file
+     * @see HuffmanFormat#DICTIONARY
+     */
+    public void setDictionary(HuffmanDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * encode every byte with the code of its context, the byte before it, contexts that are alike share a code.
+     * text is smaller than with one code, at the cost of a larger header, of grouping the contexts, which takes
+     * a few hundred ms when all 256 byte values occur, and of a decoding loop about a quarter slower
+     *
+     * @param contextModel true for the order-1 context format
+     * @see HuffmanContextModel
+     */
+    public void setContextModel(boolean contextModel) {
+        this.contextModel = contextModel;
+    }
 
-        // loop through buffers in file
-        while ((numberOfBytes = inputStream.read(bytes, 0, SIZE)) != -1) {
-            //loop through bytes in each buffer
-            for (int j = 0; j < numberOfBytes; j++) {
+    /**
+     * encode the file in segments of 4 interleaved streams, with codes of at most 11 bits,
+     * so the decoder can decode the 4 streams in the same loop, which is faster on one core
+     *
+     * @param interleaved true for the interleaved format
+     * @see HuffmanInterleaved
+     */
+    public void setInterleaved(boolean interleaved) {
+        this.interleaved = interleaved;
+    }
 
-                // merge the frequency of every byte value in treeMap
-                treeMap.merge(bytes[j], 1, (a, b) -> a + b);
-            }
-        }
+    /**
+     * read the file ahead of the coder on one thread and write the .huff file behind it on another,
+     * in large chunks through a bounded ring, so reading, coding and writing overlap
+     *
+     * @param pipelined true to pipeline the streams of the file and the .huff file
+     * @see HuffmanPipeline
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
 
-        // close the stream
-        inputStream.close();
+    /**
+     * @param progress HuffmanProgress advanced by the bytes read
+     * @return InputStream of the file, read ahead on the reader thread when pipelined
+     * @throws IOException I/O
+     */
+    private InputStream openInput(HuffmanProgress progress) throws IOException {
+        InputStream inputStream = new FileInputStream(sourceFile);
+        return progress.wrap(pipelined ? new HuffmanPipeline.Input(inputStream) : inputStream);
+    }
 
-        return treeMap;
+    /**
+     * @return OutputStream of the .huff file, written behind on the writer thread when pipelined
+     * @throws IOException I/O
+     */
+    private OutputStream openOutput() throws IOException {
+        OutputStream outputStream = new FileOutputStream(distFile);
+        return pipelined ? new HuffmanPipeline.Output(outputStream) : new BufferedOutputStream(outputStream, SIZE);
     }
 
+    /**
+     * read the file, and compute the frequency of every byte value
+     *
+     * @return long[256] indexed by the unsigned byte
+     * @throws IOException I/O
+     * @see HuffmanHistogram
+     */
+    private long[] readHistogram() throws IOException {
+        return HuffmanHistogram.count(sourceFile, memoryMapped);
+    }
 
-    private void buildHuffmanTree(PriorityQueue<HuffmanNode> heap) {
-        // building the huffman tree
-        while (heap.size() > 1) {
 
-            HuffmanNode first = heap.remove();
-            HuffmanNode second = heap.remove();
+    /**
+     * encode the file, in blocks, in the adaptive format, with a dictionary, with context codes, in interleaved streams,
+     * or with one canonical code,
+     * then give the metrics to the listener.
+     * interrupting the thread cancels the encode, and the part of the .huff file written is deleted
+     *
+     * @throws IOException Input/Output Exception, InterruptedIOException if cancelled
+     * @see HuffmanFormat
+     */
+    public void encode() throws IOException {
+        long start = System.nanoTime();
+
+        int format = blockSize > 0 ? HuffmanFormat.BLOCKS : adaptive ? HuffmanFormat.ADAPTIVE
+                : dictionary != null ? HuffmanFormat.DICTIONARY : contextModel ? HuffmanFormat.CONTEXT
+                : interleaved ? HuffmanFormat.INTERLEAVED : HuffmanFormat.CANONICAL;
+        HuffmanMetrics metrics = new HuffmanMetrics(false, format);
+        HuffmanProgress progress = new HuffmanProgress(progressListener, sourceFile.length());
+
+        try {
+            if (format == HuffmanFormat.BLOCKS) {
+                encodeBlocks(metrics, progress);
+            } else if (format == HuffmanFormat.ADAPTIVE) {
+                try (InputStream inputStream = openInput(progress);
+                     OutputStream outputStream = openOutput()) {
+                    HuffmanAdaptiveCoder.encode(inputStream, outputStream, metrics);
+                }
 
-            HuffmanNode temp = new HuffmanNode((byte) 0, first.getOcc() + second.getOcc(), first, second);
-            heap.add(temp);
+                // the codes are only known while coding, data they made larger is written again, stored
+                long originalLength = sourceFile.length();
+                if (distFile.length() > HuffmanFormat.PREFIX_LENGTH + 8 + originalLength) {
+                    metrics = new HuffmanMetrics(false, HuffmanFormat.STORED);
+                    encodeStored(metrics, new HuffmanProgress(progressListener, originalLength), originalLength);
+                }
+            } else if (format == HuffmanFormat.DICTIONARY) {
+                encodeDictionary(metrics, progress);
+            } else if (format == HuffmanFormat.CONTEXT) {
+                encodeContext(metrics, progress);
+            } else if (format == HuffmanFormat.INTERLEAVED) {
+                encodeInterleaved(metrics, progress);
+            } else {
+                encodeCanonical(metrics, progress);
+            }
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            distFile.delete();
+            throw e;
         }
 
-        // check if there is a remaining item in the binary heap
-        huffmanTree.setRoot(heap.remove());
+        metrics.setBytes(sourceFile.length(), distFile.length());
+        metrics.setTotalNanos(System.nanoTime() - start);
+        if (metricsListener != null)
+            metricsListener.completed(metrics);
     }
 
-
     /**
+     * encode the file in the canonical format: magic and version, original length,
+     * code lengths header, then the content bits with the last byte padded with 0s
+     *
+     * @param metrics  HuffmanMetrics of the encode
+     * @param progress HuffmanProgress of the encode
      * @throws IOException Input/Output Exception
+     * @see HuffmanCanonicalCode
      */
-    public void encode() throws IOException {
-
+    private void encodeCanonical(HuffmanMetrics metrics, HuffmanProgress progress) throws IOException {
+
+        // frequency of every byte value in the file, the progress counts the encoding pass
+        long start = System.nanoTime();
+        long[] histogram = readHistogram();
+        HuffmanProgress.checkInterrupted();
+        long originalLength = 0;
+        for (long count : histogram)
+            originalLength += count;
+        metrics.time(HuffmanMetrics.Phase.HISTOGRAM, start);
+        metrics.addHistogram(histogram);
+
+        // build the huffman tree, from heap, and the heap is built from the byte frequencies
+        // then give canonical codes of the same lengths as the tree codes, limited to maxCodeLength
+        start = System.nanoTime();
+        HuffmanCanonicalCode code = HuffmanCanonicalCode.fromHistogram(histogram, maxCodeLength);
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        // data the codes would not make smaller is stored
+        if (HuffmanStored.isIncompressible(code, histogram, code.headerLength(), originalLength)) {
+            encodeStored(metrics, progress, originalLength);
+            return;
+        }
 
-        // build the huffman tree, from heap, and the heap is built from TreeMap
-        buildHuffmanTree(buildHeap(readAndTreeMap()));
+        // generate the codes and code lengths of every byte value, indexed by the unsigned byte
+        codes = code.getCodes();
+        lengths = code.getLengths();
 
 
-        // generate the map of bytes to its huffman codes
-        map = huffmanTree.makeMap();
+        // open an outputStream to write the file "distFile"
+        try (DataOutputStream outputStream = new DataOutputStream(openOutput())) {
 
-        // build huffman tree string from huffman tree
-        buildHuffmanTreeHeading();
+            // write the magic and version, the original length and the code lengths in the head of the file
+            start = System.nanoTime();
+            outputStream.write(HuffmanFormat.prefix(HuffmanFormat.CANONICAL));
+            outputStream.writeLong(originalLength);
+            code.write(outputStream);
+            metrics.time(HuffmanMetrics.Phase.HEADER, start);
 
+            encodeContent(outputStream, originalLength, metrics, progress);
+        }
+    }
 
-        // open an inputStream to read the file and encode
-        BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(sourceFile));
+    /**
+     * encode the file in the dictionary format: magic and version, dictionary ID, original length,
+     * then the content bits with the last byte padded with 0s.
+     * the length is the size of the file, so it is read once
+     *
+     * @param metrics  HuffmanMetrics of the encode
+     * @param progress HuffmanProgress of the encode
+     * @throws IOException Input/Output Exception
+     * @see HuffmanDictionary
+     */
+    private void encodeDictionary(HuffmanMetrics metrics, HuffmanProgress progress) throws IOException {
+
+        // frequency of every byte value, to know if the code of the dictionary makes the file smaller
+        long start = System.nanoTime();
+        long[] histogram = readHistogram();
+        HuffmanProgress.checkInterrupted();
+        long originalLength = 0;
+        for (long count : histogram)
+            originalLength += count;
+        metrics.time(HuffmanMetrics.Phase.HISTOGRAM, start);
+        metrics.addHistogram(histogram);
+
+        // the dictionary ID is the header of the code
+        if (HuffmanStored.isIncompressible(dictionary.getCode(), histogram, 4, originalLength)) {
+            encodeStored(metrics, progress, originalLength);
+            return;
+        }
 
-        // open an outputStream to write the file "distFile"
-        FileOutputStream outputStream = new FileOutputStream(distFile);
+        codes = dictionary.getCode().getCodes();
+        lengths = dictionary.getCode().getLengths();
 
-        // write the number of distinct byte values in huffman tree in the .huff file
-        numberOfByteValuesUsed = numberOfByteValuesUsed > 255 ? 0 : numberOfByteValuesUsed;
-        outputStream.write(numberOfByteValuesUsed);
+        try (DataOutputStream outputStream = new DataOutputStream(openOutput())) {
 
-        // write the tree to the head of the file
-        outputStream.write(bitSet.toByteArray());
+            // write the magic and version, the dictionary ID and the original length in the head of the file
+            start = System.nanoTime();
+            outputStream.write(HuffmanFormat.prefix(HuffmanFormat.DICTIONARY));
+            outputStream.writeInt(dictionary.getId());
+            outputStream.writeLong(originalLength);
+            metrics.time(HuffmanMetrics.Phase.HEADER, start);
 
-        // clear the bitSet to write the content, and the index to start from zero to know where to put the ones
-        bitSet.clear();
+            encodeContent(outputStream, originalLength, metrics, progress);
+        }
+    }
 
-        // index of current bit in bitSet
-        ////// p.s: bitSet has a method length(), but this method count 1s, so if there is zeros at the end it will not count it
-        //////      so its a must to use a counter
-        //////      later on we will put a 1 as a delimiter in the bitSet if the bitSet length is not of size SIZE defined in the class head
-        int index = 0;
+    /**
+     * encode the file in the context format: magic and version, original length, the context model header,
+     * then the content bits with the last byte padded with 0s
+     *
+     * @param metrics  HuffmanMetrics of the encode
+     * @param progress HuffmanProgress of the encode
+     * @throws IOException Input/Output Exception
+     * @see HuffmanContextModel
+     */
+    private void encodeContext(HuffmanMetrics metrics, HuffmanProgress progress) throws IOException {
+
+        // frequency of every byte value after every byte value, the first byte is after 0
+        long start = System.nanoTime();
+        long[][] histogram = new long[256][256];
+        long originalLength = 0;
+        try (InputStream inputStream = new FileInputStream(sourceFile)) {
+            byte[] bytes = new byte[SIZE];
+            int numberOfBytes;
+            int context = 0;
+            while ((numberOfBytes = inputStream.read(bytes, 0, SIZE)) != -1) {
+                for (int i = 0; i < numberOfBytes; i++) {
+                    int symbol = bytes[i] & 0xFF;
+                    histogram[context][symbol]++;
+                    context = symbol;
+                }
+                originalLength += numberOfBytes;
+                HuffmanProgress.checkInterrupted();
+            }
+        }
+        long[] counts = new long[256];
+        for (long[] row : histogram) {
+            for (int b = 0; b < 256; b++)
+                counts[b] += row[b];
+        }
+        metrics.time(HuffmanMetrics.Phase.HISTOGRAM, start);
+        metrics.addHistogram(counts);
+
+        // group the contexts and make their codes
+        start = System.nanoTime();
+        HuffmanContextModel model = HuffmanContextModel.fromHistogram(histogram, maxCodeLength);
+        long[][] contextCodes = model.contextCodes();
+        int[][] contextLengths = model.contextLengths();
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        // data the codes of the contexts would not make smaller is stored
+        long contentBits = 0;
+        for (int context = 0; context < 256; context++) {
+            for (int b = 0; b < 256; b++)
+                contentBits += histogram[context][b] * contextLengths[context][b];
+        }
+        if (HuffmanStored.isIncompressible(contentBits, model.headerLength(), originalLength)) {
+            encodeStored(metrics, progress, originalLength);
+            return;
+        }
 
-        // buffer of bytes, to read from file
-        byte[] bytes = new byte[SIZE];
+        long encodedLength = 0;
+        try (DataOutputStream outputStream = new DataOutputStream(openOutput());
+             InputStream inputStream = openInput(progress)) {
+
+            // write the magic and version, the original length and the model in the head of the file
+            start = System.nanoTime();
+            outputStream.write(HuffmanFormat.prefix(HuffmanFormat.CONTEXT));
+            outputStream.writeLong(originalLength);
+            model.write(outputStream);
+            metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+            start = System.nanoTime();
+            HuffmanBitWriter writer = new HuffmanBitWriter(outputStream, SIZE);
+            byte[] bytes = new byte[SIZE];
+            int numberOfBytes;
+            int context = 0;
+            while ((numberOfBytes = inputStream.read(bytes, 0, SIZE)) != -1) {
+                if ((encodedLength += numberOfBytes) > originalLength)
+                    break;
+                context = writer.write(bytes, 0, numberOfBytes, contextCodes, contextLengths, context);
+            }
 
-        // number of bytes read from file in buffer
-        int numberOfBytes;
+            // pad the last byte with 0s
+            writer.flush();
+            metrics.time(HuffmanMetrics.Phase.CODING, start);
+            metrics.addContent(encodedLength, writer.getBitsWritten());
+            metrics.addFlushes(writer.getFlushes());
+        }
 
-        // for each buffer size of bytes in file read
-        while ((numberOfBytes = inputStream.read(bytes, 0, SIZE)) != -1) {
-            // loop through bytes in each buffer
-            for (int j = 0; j < numberOfBytes; j++) {
+        if (encodedLength != originalLength)
+            throw new IOException("Error:File changed while encoding.");
+    }
 
-                // loop through bits of huffman code for the current byte
-                for (char c : map.get(bytes[j]).toCharArray()) {
+    /**
+     * encode the file in the interleaved format: magic and version, original length, code lengths header,
+     * then the segments of 4 streams
+     *
+     * @param metrics  HuffmanMetrics of the encode
+     * @param progress HuffmanProgress of the encode
+     * @throws IOException Input/Output Exception
+     * @see HuffmanInterleaved
+     */
+    private void encodeInterleaved(HuffmanMetrics metrics, HuffmanProgress progress) throws IOException {
+
+        // frequency of every byte value in the file, the progress counts the encoding pass
+        long start = System.nanoTime();
+        long[] histogram = readHistogram();
+        HuffmanProgress.checkInterrupted();
+        long originalLength = 0;
+        for (long count : histogram)
+            originalLength += count;
+        metrics.time(HuffmanMetrics.Phase.HISTOGRAM, start);
+        metrics.addHistogram(histogram);
+
+        // every code must be decoded by one table lookup
+        start = System.nanoTime();
+        HuffmanCanonicalCode code = HuffmanCanonicalCode.fromHistogram(histogram,
+                Math.min(maxCodeLength, HuffmanInterleaved.MAX_CODE_LENGTH));
+        codes = code.getCodes();
+        lengths = code.getLengths();
+        metrics.time(HuffmanMetrics.Phase.TREE, start);
+
+        // every segment adds its stream lengths to the code lengths header
+        long segments = (originalLength + HuffmanInterleaved.SEGMENT_SIZE - 1) / HuffmanInterleaved.SEGMENT_SIZE;
+        if (HuffmanStored.isIncompressible(code, histogram, code.headerLength() + segments * 4 * HuffmanInterleaved.STREAMS, originalLength)) {
+            encodeStored(metrics, progress, originalLength);
+            return;
+        }
 
-                    // if bit is 1 then write in bitSet, if not, then its already 0
-                    if (c == '1') bitSet.set(index);
+        try (InputStream inputStream = openInput(progress);
+             DataOutputStream outputStream = new DataOutputStream(openOutput())) {
+
+            // write the magic and version, the original length and the code lengths in the head of the file
+            start = System.nanoTime();
+            outputStream.write(HuffmanFormat.prefix(HuffmanFormat.INTERLEAVED));
+            outputStream.writeLong(originalLength);
+            code.write(outputStream);
+            metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+            start = System.nanoTime();
+            byte[] segment = new byte[HuffmanInterleaved.SEGMENT_SIZE];
+            HuffmanInterleaved interleaved = new HuffmanInterleaved();
+            long encodedLength = 0;
+            int length;
+            while (encodedLength < originalLength && (length = readBlock(inputStream, segment)) > 0) {
+                length = (int) Math.min(length, originalLength - encodedLength);
+                long bits = interleaved.writeSegment(segment, length, codes, lengths, outputStream);
+                encodedLength += length;
+                metrics.addContent(length, bits);
+                metrics.addFlushes(1);
+            }
+            metrics.time(HuffmanMetrics.Phase.CODING, start);
 
-                    // increment the counter of bits
-                    index++;
+            if (encodedLength != originalLength)
+                throw new IOException("Error:File changed while encoding.");
+        }
+    }
 
-                    // if the bitSet length equals or larger than 1kb then right it to the file
-                    if (index / 8 == SIZE) {
-                        bitSet.set(index);
-                        // write the bitSet, and reset index and bitSet
-                        outputStream.write(bitSet.toByteArray(), 0, index / 8);
-                        index = 0;
-                        bitSet.clear();
-                    }
-                }
+    /**
+     * write the file in the stored format: magic and version, original length, then the bytes of the file,
+     * copied by the channels without coding
+     *
+     * @param metrics        HuffmanMetrics of the encode, its format becomes STORED
+     * @param progress       HuffmanProgress of the encode
+     * @param originalLength number of bytes counted, must be the size of the file
+     * @throws IOException I/O, or if the file changed
+     * @see HuffmanStored
+     */
+    private void encodeStored(HuffmanMetrics metrics, HuffmanProgress progress, long originalLength) throws IOException {
+        metrics.setFormat(HuffmanFormat.STORED);
+
+        try (FileChannel input = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+             FileOutputStream outputStream = new FileOutputStream(distFile)) {
+            if (input.size() != originalLength)
+                throw new IOException("Error:File changed while encoding.");
+
+            // write the magic and version and the original length in the head of the file
+            long start = System.nanoTime();
+            FileChannel output = outputStream.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HuffmanFormat.PREFIX_LENGTH + 8);
+            header.put(HuffmanFormat.prefix(HuffmanFormat.STORED)).putLong(originalLength).flip();
+            while (header.hasRemaining())
+                output.write(header);
+            metrics.time(HuffmanMetrics.Phase.HEADER, start);
+
+            start = System.nanoTime();
+            HuffmanStored.copy(input, 0, originalLength, output, progress);
+            metrics.time(HuffmanMetrics.Phase.CODING, start);
+        }
+        metrics.addContent(originalLength, originalLength * 8);
+    }
 
-            }
+    /**
+     * write the codes of the bytes of the file after the header, with the last byte padded with 0s,
+     * then close the output
+     *
+     * @param outputStream   stream of the .huff file after the header
+     * @param originalLength number of bytes to encode, must be the size of the file
+     * @param metrics        HuffmanMetrics of the encode
+     * @param progress       HuffmanProgress of the encode
+     * @throws IOException I/O, or if the file changed
+     */
+    private void encodeContent(OutputStream outputStream, long originalLength, HuffmanMetrics metrics,
+                               HuffmanProgress progress) throws IOException {
+
+        // writes the codes through a 64 bit accumulator, whole bytes at a time
+        long start = System.nanoTime();
+        HuffmanBitWriter writer = new HuffmanBitWriter(outputStream, SIZE);
+
+        if (memoryMapped) {
+            encodeMapped(writer, originalLength, progress);
+            writer.flush();
+            outputStream.close();
+            metrics.time(HuffmanMetrics.Phase.CODING, start);
+            metrics.addContent(originalLength, writer.getBitsWritten());
+            metrics.addFlushes(writer.getFlushes());
+            return;
         }
 
-        // put a delimiter at the end for the reason explained in line 148
-        bitSet.set(index);
+        // number of bytes encoded, must be the number counted
+        long encodedLength = 0;
 
+        // open an inputStream to read the file and encode
+        try (InputStream inputStream = openInput(progress)) {
 
-        // if the bitSet is not empty, write it to the file
-        if (index != 0) {
-            outputStream.write(bitSet.toByteArray());
-            bitSet.clear();
-        }
+            // buffer of bytes, to read from file
+            byte[] bytes = new byte[SIZE];
 
+            // number of bytes read from file in buffer
+            int numberOfBytes;
 
-        // write the number of leftovers bits after writing
-        outputStream.write(8 - (index % 8));
+            // for each buffer size of bytes in file read, write the codes of its bytes
+            while ((numberOfBytes = inputStream.read(bytes, 0, SIZE)) != -1) {
+                if ((encodedLength += numberOfBytes) > originalLength)
+                    break;
+                writer.write(bytes, 0, numberOfBytes, codes, lengths);
+            }
+        }
 
+        // pad the last byte with 0s
+        writer.flush();
 
-        // close the streams
+        // close the stream, a pipelined one waits for the writer
         outputStream.close();
-        inputStream.close();
+        metrics.time(HuffmanMetrics.Phase.CODING, start);
+        metrics.addContent(encodedLength, writer.getBitsWritten());
+        metrics.addFlushes(writer.getFlushes());
 
+        if (encodedLength != originalLength)
+            throw new IOException("Error:File changed while encoding.");
     }
 
     /**
-     * @see BitSet
+     * write the codes of the bytes of the file, window by window of its mapping
+     *
+     * @param writer         HuffmanBitWriter of the output
+     * @param originalLength number of bytes counted, must be the size of the file
+     * @param progress       HuffmanProgress of the encode
+     * @throws IOException I/O
+     */
+    private void encodeMapped(HuffmanBitWriter writer, long originalLength, HuffmanProgress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != originalLength)
+                throw new IOException("Error:File changed while encoding.");
+
+            for (long position = 0; position < originalLength; position += HuffmanMapping.WINDOW_SIZE) {
+                MappedByteBuffer window = HuffmanMapping.map(channel, FileChannel.MapMode.READ_ONLY, position, originalLength);
+
+                // encode the window a step at a time, to report progress
+                int end = window.limit();
+                for (int from = 0; from < end; from += PROGRESS_STEP) {
+                    window.limit(Math.min(end, from + PROGRESS_STEP));
+                    window.position(from);
+                    writer.write(window, codes, lengths);
+                    progress.advance(window.limit() - from);
+                }
+            }
+        }
+    }
+
+    /**
+     * encode the file in the block format: magic and version, block size, the block records,
+     * the END byte, then the block index.
+     * blocks are read in order, encoded on the pool and written in order, with at most 2 blocks per thread in memory
+     *
+     * @param metrics  HuffmanMetrics of the encode, the blocks add to it from the pool
+     * @param progress HuffmanProgress of the encode, it counts the bytes read
+     * @throws IOException Input/Output Exception
+     * @see HuffmanBlock
+     * @see HuffmanBlockIndex
      */
-    private void buildHuffmanTreeHeading() {
+    private void encodeBlocks(HuffmanMetrics metrics, HuffmanProgress progress) throws IOException {
 
-        StringBuilder tree = new StringBuilder();                       // hold the binary coded tree
-        Stack<HuffmanNode> stack = new Stack<>();                       // stack to go through the binary tree
-        stack.push(huffmanTree.getRoot());                              // push the head to the stack
-        HuffmanNode temp;                                               // make a temp node to hold current node in tree
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
 
-        // while the stack NOT empty, to loop through huffman tree inorder
-        while (!stack.isEmpty()) {
-            temp = stack.pop();
+        // blocks being encoded, in file order
+        ArrayDeque<Future<HuffmanBlock>> inFlight = new ArrayDeque<>();
 
-            // if node is leaf, then print 1 and add the byte bits to the tree String code
-            if (temp.isLeaf()) {
-                tree.append("1").append(String.format("%8s", Integer.toBinaryString(Byte.toUnsignedInt(temp.getC()))).replace(' ', '0'));
-            }
+        // file offset and original length of every written block
+        HuffmanBlockIndex index = new HuffmanBlockIndex();
 
-            // if not, then add 0 to the string code
-            else {
-                tree.append("0");
-            }
+        try (InputStream inputStream = openInput(progress);
+             DataOutputStream outputStream = new DataOutputStream(openOutput())) {
 
+            // write the magic and version and the block size in the head of the file
+            outputStream.write(HuffmanFormat.prefix(HuffmanFormat.BLOCKS));
+            outputStream.writeInt(blockSize);
+            long position = HuffmanFormat.PREFIX_LENGTH + 4;
 
-            // if code has right, then push to the stack
-            if (temp.getRight() != null) {
-                stack.push(temp.getRight());
-            }
-            // if code has left, then push to the stack
-            if (temp.getLeft() != null) {
-                stack.push(temp.getLeft());
+            boolean end = false;
+            while (!end || !inFlight.isEmpty()) {
+
+                // read the next block and give it to the pool
+                if (!end) {
+                    byte[] block = new byte[blockSize];
+                    int length = readBlock(inputStream, block);
+                    end = length < blockSize;
+                    if (length > 0)
+                        inFlight.add(pool.submit(() -> HuffmanBlock.encode(block, 0, length, maxCodeLength, metrics)));
+                }
+
+                // write the oldest block when the pool is full, or when all blocks are read
+                if (inFlight.size() >= 2 * threads || (end && !inFlight.isEmpty())) {
+                    HuffmanBlock block = await(inFlight.remove());
+                    index.add(position, block.originalLength);
+                    block.write(outputStream);
+                    position += block.recordLength();
+                }
             }
 
+            // write the END byte then the index
+            outputStream.writeByte(HuffmanBlock.END);
+            index.write(outputStream, position + 1);
+        } finally {
+            pool.shutdownNow();
         }
+    }
 
+    /**
+     * read bytes until the block is full or the stream ends
+     *
+     * @return number of bytes read
+     */
+    private static int readBlock(InputStream inputStream, byte[] block) throws IOException {
+        int length = 0;
+        int numberOfBytes;
+        while (length < block.length && (numberOfBytes = inputStream.read(block, length, block.length - length)) != -1)
+            length += numberOfBytes;
+        return length;
+    }
 
-        // Writing the tree to the bitSet object
-        for (int i = 0; i < tree.length(); i++) {
-            if (tree.charAt(i) == '1')
-                bitSet.set(i);
-            else {
-                bitSet.set(i, false);
-            }
+    /**
+     * wait for an encoded block
+     *
+     * @throws IOException the exception of the block, or if the thread is interrupted
+     */
+    private static HuffmanBlock await(Future<HuffmanBlock> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding.");
         }
-
-        this.numberOfByteValuesUsed = map.size();
     }
 
-}
\ No newline at end of file
+}
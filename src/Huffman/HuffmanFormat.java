@@ -0,0 +1,90 @@
+package Huffman;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+
+/**
+ * Created for the .huff format versions.
+ * Files written with a version start with the bytes 'H' 'U' 'F' then the version byte,
+ * files without them are the legacy format: distinct bytes count, pre-order tree bits, content, padding value.
+ * 'H' 'U' can never start a legacy file, a legacy file starting with 'H' (72) has 72 distinct bytes,
+ * so its tree starts with an inner node which is a 0 bit, and the first bit of 'U' (0x55) is 1
+ */
+public class HuffmanFormat {
+
+    // the first bytes of every file that has a version byte
+    static final byte[] MAGIC = {'H', 'U', 'F'};
+
+    // number of bytes of the magic and the version
+    static final int PREFIX_LENGTH = MAGIC.length + 1;
+
+    // the format without a version: the tree is written as pre-order bits
+    public static final int LEGACY = 0;
+
+    // original length, canonical code lengths header, content
+    public static final int CANONICAL = 1;
+
+    // block size, block records each with its own code, END byte, block index
+    public static final int BLOCKS = 2;
+
+    // segments coded with codes rebuilt from the running counts, no tree is written, see HuffmanAdaptiveCoder
+    public static final int ADAPTIVE = 3;
+
+    // dictionary ID, original length, content coded with the code of the dictionary, see HuffmanDictionary
+    public static final int DICTIONARY = 4;
+
+    // original length, codes of the groups of previous byte contexts, content, see HuffmanContextModel
+    public static final int CONTEXT = 5;
+
+    // original length, canonical code lengths header, segments of 4 interleaved streams, see HuffmanInterleaved
+    public static final int INTERLEAVED = 6;
+
+    // original length, then the bytes as they are, written when coding would not make them smaller, see HuffmanStored
+    public static final int STORED = 7;
+
+    // entry records and shared code tables of many files, then their directory, see HuffmanArchive
+    public static final int ARCHIVE = 8;
+
+
+    /**
+     * read the magic and the version at the start of a stream,
+     * if the stream does not start with the magic then nothing is consumed
+     *
+     * @param stream PushbackInputStream that can unread PREFIX_LENGTH bytes
+     * @return the version, LEGACY if there is no magic
+     * @throws IOException I/O, or if the version is not known
+     */
+    static int readVersion(PushbackInputStream stream) throws IOException {
+        byte[] prefix = new byte[PREFIX_LENGTH];
+        int numberOfBytes = 0;
+        int temp;
+        while (numberOfBytes < PREFIX_LENGTH && (temp = stream.read(prefix, numberOfBytes, PREFIX_LENGTH - numberOfBytes)) != -1)
+            numberOfBytes += temp;
+
+        // check the magic
+        boolean magic = numberOfBytes == PREFIX_LENGTH;
+        for (int i = 0; magic && i < MAGIC.length; i++)
+            magic = prefix[i] == MAGIC[i];
+
+        if (!magic) {
+            stream.unread(prefix, 0, numberOfBytes);
+            return LEGACY;
+        }
+
+        int version = prefix[MAGIC.length];
+        if (version < CANONICAL || version > ARCHIVE)
+            throw new IOException("Error:Unknown file version " + version + ".");
+        return version;
+    }
+
+    /**
+     * @param version the version to write after the magic
+     * @return the magic followed by the version byte
+     */
+    static byte[] prefix(int version) {
+        byte[] prefix = new byte[PREFIX_LENGTH];
+        System.arraycopy(MAGIC, 0, prefix, 0, MAGIC.length);
+        prefix[MAGIC.length] = (byte) version;
+        return prefix;
+    }
+}
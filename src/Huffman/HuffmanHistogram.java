@@ -0,0 +1,233 @@
+package Huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class to count the frequency of every byte value in a file or a buffer,
+ * counts are longs indexed by the unsigned byte value.
+ * A file is split into regions that are counted in parallel on a fork-join pool and merged at the end,
+ * so the counts are exactly the ones of a sequential pass
+ */
+public class HuffmanHistogram {
+
+    // files smaller than this are counted on the calling thread
+    private static final long REGION_SIZE = 16 * 1024 * 1024;
+
+    // size of the buffer every region is read with
+    private static final int SIZE = 256 * 1024;
+
+
+    /**
+     * count the byte values of a file
+     *
+     * @param file File to read
+     * @return long[256] counts
+     * @throws IOException I/O
+     */
+    public static long[] count(File file) throws IOException {
+        return count(file, false);
+    }
+
+    /**
+     * count the byte values of a file, reading it with positional reads or through mapped windows
+     *
+     * @param file   File to read
+     * @param mapped true to count over mapped windows of the file, without copying it to a buffer
+     * @return long[256] counts
+     * @throws IOException I/O
+     * @see HuffmanMapping
+     */
+    public static long[] count(File file, boolean mapped) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            // no need for threads on small files
+            if (size <= REGION_SIZE)
+                return countRegion(channel, 0, size, mapped);
+
+            try {
+                return ForkJoinPool.commonPool().invoke(new RegionTask(channel, 0, size, mapped));
+            } catch (UncheckedIOException e) {
+                // the task wraps the IOException of the region that failed, the pool may wrap it again
+                Throwable cause = e;
+                while (cause instanceof UncheckedIOException)
+                    cause = cause.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * add the counts of the bytes in bytes[offset..offset + length) to histogram,
+     * the bytes are counted in 4 interleaved tables so consecutive increments of the same value do not wait on each other
+     *
+     * @param bytes     the bytes to count
+     * @param offset    index of the first byte
+     * @param length    number of bytes
+     * @param histogram long[256] to add the counts to
+     */
+    public static void count(byte[] bytes, int offset, int length, long[] histogram) {
+        long[] count0 = new long[256];
+        long[] count1 = new long[256];
+        long[] count2 = new long[256];
+        long[] count3 = new long[256];
+
+        int i = offset;
+        int end = offset + length;
+
+        // 4 bytes at a time, each one in its own table
+        for (; i + 4 <= end; i += 4) {
+            count0[bytes[i] & 0xFF]++;
+            count1[bytes[i + 1] & 0xFF]++;
+            count2[bytes[i + 2] & 0xFF]++;
+            count3[bytes[i + 3] & 0xFF]++;
+        }
+
+        // the leftovers
+        for (; i < end; i++) {
+            count0[bytes[i] & 0xFF]++;
+        }
+
+        // merge the tables
+        for (int b = 0; b < 256; b++) {
+            histogram[b] += count0[b] + count1[b] + count2[b] + count3[b];
+        }
+    }
+
+
+    /**
+     * add the counts of the bytes from the position to the limit of buffer, without moving its position
+     *
+     * @param buffer    ByteBuffer, heap, direct or mapped
+     * @param histogram long[256] to add the counts to
+     */
+    public static void count(ByteBuffer buffer, long[] histogram) {
+        count(buffer, histogram, new long[4][256]);
+    }
+
+    /**
+     * add the counts of the bytes from the position to the limit of buffer, in tables kept by the caller,
+     * so a count allocates nothing
+     *
+     * @param buffer    ByteBuffer, heap, direct or mapped
+     * @param histogram long[256] to add the counts to
+     * @param tables    long[4][256] the counts of every 4th byte, cleared before they are used
+     */
+    static void count(ByteBuffer buffer, long[] histogram, long[][] tables) {
+        long[] count0 = tables[0];
+        long[] count1 = tables[1];
+        long[] count2 = tables[2];
+        long[] count3 = tables[3];
+        for (long[] table : tables)
+            Arrays.fill(table, 0);
+
+        int i = buffer.position();
+        int end = buffer.limit();
+
+        // 4 bytes at a time, each one in its own table
+        for (; i + 4 <= end; i += 4) {
+            count0[buffer.get(i) & 0xFF]++;
+            count1[buffer.get(i + 1) & 0xFF]++;
+            count2[buffer.get(i + 2) & 0xFF]++;
+            count3[buffer.get(i + 3) & 0xFF]++;
+        }
+
+        // the leftovers
+        for (; i < end; i++) {
+            count0[buffer.get(i) & 0xFF]++;
+        }
+
+        // merge the tables
+        for (int b = 0; b < 256; b++) {
+            histogram[b] += count0[b] + count1[b] + count2[b] + count3[b];
+        }
+    }
+
+
+    /**
+     * count the bytes in [from, to) of the channel, with positional reads or mapped windows
+     * so regions can be read at the same time
+     */
+    private static long[] countRegion(FileChannel channel, long from, long to, boolean mapped) throws IOException {
+        long[] histogram = new long[256];
+
+        if (mapped) {
+            for (long position = from; position < to; position += HuffmanMapping.WINDOW_SIZE)
+                count(HuffmanMapping.map(channel, FileChannel.MapMode.READ_ONLY, position, to), histogram);
+            return histogram;
+        }
+
+        byte[] bytes = new byte[(int) Math.min(SIZE, Math.max(1, to - from))];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(bytes.length, to - position));
+
+            int numberOfBytes = channel.read(buffer, position);
+            if (numberOfBytes == -1)
+                throw new IOException("Error:Unexpected end of file.");
+
+            count(bytes, 0, numberOfBytes, histogram);
+            position += numberOfBytes;
+        }
+
+        return histogram;
+    }
+
+
+    /**
+     * counts a region of the file, splitting it in halves until it is at most REGION_SIZE
+     */
+    private static class RegionTask extends RecursiveTask<long[]> {
+
+        // a task is never serialized, the field is only there because ForkJoinTask is Serializable
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+        private final boolean mapped;
+
+        RegionTask(FileChannel channel, long from, long to, boolean mapped) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.mapped = mapped;
+        }
+
+        @Override
+        protected long[] compute() {
+            try {
+                if (to - from <= REGION_SIZE)
+                    return countRegion(channel, from, to, mapped);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            long middle = from + (to - from) / 2;
+            RegionTask left = new RegionTask(channel, from, middle, mapped);
+            RegionTask right = new RegionTask(channel, middle, to, mapped);
+            left.fork();
+
+            // merge the halves
+            long[] histogram = right.compute();
+            long[] leftHistogram = left.join();
+            for (int b = 0; b < 256; b++) {
+                histogram[b] += leftHistogram[b];
+            }
+            return histogram;
+        }
+    }
+}
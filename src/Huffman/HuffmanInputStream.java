@@ -0,0 +1,141 @@
+package Huffman;
+
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Input stream that decompresses a block .huff stream as it is read,
+ * blocks are read and decoded one at a time so only one block is held in memory.
+ * The block index after the END byte is read and skipped, so the underlying stream is left after the .huff data
+ *
+ * @see HuffmanOutputStream
+ * @see HuffmanBlock
+ */
+public class HuffmanInputStream extends FilterInputStream {
+
+    // stream of the compressed data
+    private final DataInputStream input;
+
+    // decoded bytes of the current block, of the block size of the stream
+    private final byte[] block;
+
+    // index of the next byte to read in the block
+    private int blockPosition = 0;
+
+    // number of decoded bytes in the block
+    private int blockLength = 0;
+
+    // true after the END byte is read
+    private boolean finished = false;
+
+
+    /**
+     * @param in stream of the compressed data, starting with the magic and version
+     * @throws IOException I/O, or if the stream is not a block .huff stream or its block size is not valid
+     */
+    public HuffmanInputStream(InputStream in) throws IOException {
+        super(in);
+
+        PushbackInputStream prefix = new PushbackInputStream(in, HuffmanFormat.PREFIX_LENGTH);
+        if (HuffmanFormat.readVersion(prefix) != HuffmanFormat.BLOCKS)
+            throw new IOException("Error:Not a block .huff stream.");
+
+        this.input = new DataInputStream(prefix);
+
+        // the block size, a flushed block is shorter, never longer, a record that decodes to more is not read
+        this.block = new byte[HuffmanBlock.checkBlockSize(input.readInt())];
+    }
+
+    /**
+     * a channel that decompresses the block .huff data read from in
+     *
+     * @param in channel of the compressed data
+     * @return ReadableByteChannel
+     * @throws IOException I/O, or if the channel is not a block .huff stream
+     */
+    public static ReadableByteChannel newChannel(ReadableByteChannel in) throws IOException {
+        return Channels.newChannel(new HuffmanInputStream(Channels.newInputStream(in)));
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        if (blockPosition == blockLength && !nextBlock())
+            return -1;
+        return block[blockPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IndexOutOfBoundsException();
+        if (length == 0)
+            return 0;
+        if (blockPosition == blockLength && !nextBlock())
+            return -1;
+
+        int numberOfBytes = Math.min(length, blockLength - blockPosition);
+        System.arraycopy(block, blockPosition, bytes, offset, numberOfBytes);
+        blockPosition += numberOfBytes;
+        return numberOfBytes;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && (blockPosition < blockLength || nextBlock())) {
+            int numberOfBytes = (int) Math.min(n - skipped, blockLength - blockPosition);
+            blockPosition += numberOfBytes;
+            skipped += numberOfBytes;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return blockLength - blockPosition;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+
+    /**
+     * read and decode the next block record
+     *
+     * @return false at the END byte
+     */
+    private boolean nextBlock() throws IOException {
+        while (!finished) {
+            HuffmanBlock record = HuffmanBlock.read(input, block.length);
+
+            // skip the index after the END byte: entries then the index offset
+            if (record == null) {
+                int blocks = input.readInt();
+                for (int i = 0; i < blocks; i++) {
+                    input.readLong();
+                    input.readInt();
+                }
+                input.readLong();
+                finished = true;
+                return false;
+            }
+
+            record.decode(block, 0);
+            blockPosition = 0;
+            blockLength = record.originalLength;
+
+            // empty blocks have nothing to read
+            if (blockLength > 0)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,234 @@
+package Huffman;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Class of the segments of the interleaved format: the bytes of a segment are dealt round-robin to 4 streams,
+ * byte i to stream i % 4, and every stream is coded on its own, so the decoder can advance 4 bit buffers
+ * that do not depend on each other in one loop and the CPU overlaps their table lookups.
+ * no code is longer than the table index, so every symbol is decoded by one lookup.
+ *
+ * A segment is written as: the number of bytes of its streams (int), the number of bytes of the streams 0, 1, 2
+ * (int each, the stream 3 takes the rest), then the 4 streams, each padded with 0s to a whole byte.
+ * the segment holds SEGMENT_SIZE bytes, the last one the rest of the file.
+ * an instance keeps the array the streams of a segment are coded into, so the encoder reuses it for every segment
+ *
+ * @see HuffmanFormat#INTERLEAVED
+ */
+class HuffmanInterleaved {
+
+    // number of streams of a segment
+    static final int STREAMS = 4;
+
+    // number of original bytes of a segment
+    static final int SEGMENT_SIZE = 256 * 1024;
+
+    // the longest code, so a code is always resolved by one table lookup
+    static final int MAX_CODE_LENGTH = HuffmanDecodingTable.TABLE_BITS;
+
+    // the most bytes of the streams of a segment, every code at most MAX_CODE_LENGTH bits and every stream padded
+    private static final int MAX_SEGMENT_BYTES = SEGMENT_SIZE / 8 * MAX_CODE_LENGTH + STREAMS;
+
+    // number of zero bytes after the last stream: a refill reads 8 bytes, and starts at most 7 bytes past the end
+    // of its stream, as it is checked before that no bit past the end was decoded
+    private static final int PADDING = 16;
+
+    // the streams of the segment coded, one after the other, and the end of every one
+    private byte[] coded = new byte[0];
+    private final int[] ends = new int[STREAMS];
+
+
+    /**
+     * write a segment, the streams are coded into the array of the instance, with a 64 bit buffer
+     * written out 32 bits at a time
+     *
+     * @param bytes   the original bytes of the segment
+     * @param length  number of original bytes
+     * @param codes   code of every byte value, first bit is bit 0
+     * @param lengths code length of every byte value, at most MAX_CODE_LENGTH
+     * @param out     DataOutputStream of the file
+     * @return number of bits of the codes, not counting padding
+     * @throws IOException I/O
+     */
+    long writeSegment(byte[] bytes, int length, long[] codes, int[] lengths, DataOutputStream out) throws IOException {
+        if (coded.length < MAX_SEGMENT_BYTES)
+            coded = new byte[MAX_SEGMENT_BYTES];
+        byte[] coded = this.coded;
+        int position = 0;
+        long bits = 0;
+
+        for (int stream = 0; stream < STREAMS; stream++) {
+            int start = position;
+            long bitBuffer = 0;
+            int bitCount = 0;
+            for (int i = stream; i < length; i += STREAMS) {
+                int symbol = bytes[i] & 0xFF;
+                bitBuffer |= codes[symbol] << bitCount;
+                bitCount += lengths[symbol];
+                if (bitCount >= 32) {
+                    coded[position] = (byte) bitBuffer;
+                    coded[position + 1] = (byte) (bitBuffer >>> 8);
+                    coded[position + 2] = (byte) (bitBuffer >>> 16);
+                    coded[position + 3] = (byte) (bitBuffer >>> 24);
+                    position += 4;
+                    bitBuffer >>>= 32;
+                    bitCount -= 32;
+                }
+            }
+            bits += (long) (position - start) * 8 + bitCount;
+
+            // the last bits, padded with 0 to a whole byte
+            for (; bitCount > 0; bitCount -= 8) {
+                coded[position++] = (byte) bitBuffer;
+                bitBuffer >>>= 8;
+            }
+            ends[stream] = position;
+        }
+
+        out.writeInt(position);
+        out.writeInt(ends[0]);
+        for (int stream = 1; stream < STREAMS - 1; stream++)
+            out.writeInt(ends[stream] - ends[stream - 1]);
+        out.write(coded, 0, position);
+        return bits;
+    }
+
+    /**
+     * read the streams of a segment
+     *
+     * @param in     DataInputStream after the previous segment
+     * @param buffer the buffer of the last segment read, or null
+     * @param starts int[STREAMS + 1] set to the index of every stream in the buffer, and the end of the last one
+     * @return the buffer holding the streams, followed by zero bytes
+     * @throws IOException I/O, or if the lengths are not valid
+     */
+    static byte[] readSegment(DataInputStream in, byte[] buffer, int[] starts) throws IOException {
+        int total = in.readInt();
+        if (total < 0 || total > MAX_SEGMENT_BYTES)
+            throw new IOException("Error:Invalid segment in file.");
+
+        starts[0] = 0;
+        for (int stream = 1; stream < STREAMS; stream++) {
+            int length = in.readInt();
+            starts[stream] = starts[stream - 1] + length;
+            if (length < 0 || starts[stream] > total)
+                throw new IOException("Error:Invalid segment in file.");
+        }
+        starts[STREAMS] = total;
+
+        if (buffer == null || buffer.length < total + PADDING)
+            buffer = new byte[total + PADDING];
+        in.readFully(buffer, 0, total);
+        for (int i = total; i < total + PADDING; i++)
+            buffer[i] = 0;
+        return buffer;
+    }
+
+    /**
+     * decode the 4 streams of a segment into the original bytes
+     *
+     * @param table  the entries of the HuffmanDecodingTable of the code, no code longer than MAX_CODE_LENGTH
+     * @param buffer the streams, followed by zero bytes
+     * @param starts index of every stream in the buffer, and the end of the last one
+     * @param out    array for the original bytes
+     * @param length number of original bytes of the segment
+     * @throws IOException if the streams hold bits that are not a code, or are too short
+     */
+    static void decodeSegment(int[] table, byte[] buffer, int[] starts, byte[] out, int length) throws IOException {
+        final int mask = HuffmanDecodingTable.TABLE_MASK;
+
+        // the bytes read 8 at a time, the first one in the lowest bits
+        ByteBuffer view = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+
+        // the bit buffer, the number of bits in it, the next byte and the end of every stream
+        long bits0 = 0, bits1 = 0, bits2 = 0, bits3 = 0;
+        int count0 = 0, count1 = 0, count2 = 0, count3 = 0;
+        int pos0 = starts[0], pos1 = starts[1], pos2 = starts[2], pos3 = starts[3];
+        int end0 = starts[1], end1 = starts[2], end2 = starts[3], end3 = starts[4];
+
+        // a round decodes one symbol of every stream, 5 rounds take at most 55 bits of every buffer
+        int rounds = length / STREAMS;
+        int i = 0;
+        for (int round = 0; round + 5 <= rounds; round += 5) {
+            // no stream may have given bits past its end, so the next 8 bytes are in the buffer
+            if (pos0 * 8 - count0 > end0 * 8 || pos1 * 8 - count1 > end1 * 8
+                    || pos2 * 8 - count2 > end2 * 8 || pos3 * 8 - count3 > end3 * 8)
+                throw new IOException("Error:Unexpected end of file.");
+
+            // fill every buffer to 56 bits or more with the next 8 bytes, keeping the whole bytes taken
+            bits0 |= view.getLong(pos0) << count0;
+            bits1 |= view.getLong(pos1) << count1;
+            bits2 |= view.getLong(pos2) << count2;
+            bits3 |= view.getLong(pos3) << count3;
+            pos0 += (63 - count0) >>> 3;
+            pos1 += (63 - count1) >>> 3;
+            pos2 += (63 - count2) >>> 3;
+            pos3 += (63 - count3) >>> 3;
+            count0 |= 56;
+            count1 |= 56;
+            count2 |= 56;
+            count3 |= 56;
+
+            for (int r = 0; r < 5; r++, i += STREAMS) {
+                int e0 = table[(int) bits0 & mask];
+                int e1 = table[(int) bits1 & mask];
+                int e2 = table[(int) bits2 & mask];
+                int e3 = table[(int) bits3 & mask];
+                // the entry 0 means that no code starts with these bits, every other entry holds a symbol
+                if (e0 == 0 || e1 == 0 || e2 == 0 || e3 == 0)
+                    throw new IOException("Error:Invalid code in file.");
+
+                out[i] = (byte) e0;
+                out[i + 1] = (byte) e1;
+                out[i + 2] = (byte) e2;
+                out[i + 3] = (byte) e3;
+
+                int length0 = (e0 >>> 16) & 0x1F;
+                int length1 = (e1 >>> 16) & 0x1F;
+                int length2 = (e2 >>> 16) & 0x1F;
+                int length3 = (e3 >>> 16) & 0x1F;
+                bits0 >>>= length0;
+                bits1 >>>= length1;
+                bits2 >>>= length2;
+                bits3 >>>= length3;
+                count0 -= length0;
+                count1 -= length1;
+                count2 -= length2;
+                count3 -= length3;
+            }
+        }
+
+        // the last symbols, one at a time, stream i % 4
+        long[] bits = {bits0, bits1, bits2, bits3};
+        int[] counts = {count0, count1, count2, count3};
+        int[] positions = {pos0, pos1, pos2, pos3};
+        for (; i < length; i++) {
+            int stream = i % STREAMS;
+            if (counts[stream] < MAX_CODE_LENGTH) {
+                if (positions[stream] * 8 - counts[stream] > starts[stream + 1] * 8)
+                    throw new IOException("Error:Unexpected end of file.");
+                bits[stream] |= view.getLong(positions[stream]) << counts[stream];
+                positions[stream] += (63 - counts[stream]) >>> 3;
+                counts[stream] |= 56;
+            }
+            int entry = table[(int) bits[stream] & mask];
+            if (entry == 0)
+                throw new IOException("Error:Invalid code in file.");
+            out[i] = (byte) entry;
+            int codeLength = (entry >>> 16) & 0x1F;
+            bits[stream] >>>= codeLength;
+            counts[stream] -= codeLength;
+        }
+
+        // the bits taken from every stream must be in the stream, not in the next one or the padding
+        for (int stream = 0; stream < STREAMS; stream++) {
+            long consumed = (long) (positions[stream] - starts[stream]) * 8 - counts[stream];
+            if (consumed > (long) (starts[stream + 1] - starts[stream]) * 8)
+                throw new IOException("Error:Unexpected end of file.");
+        }
+    }
+}
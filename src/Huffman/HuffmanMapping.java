@@ -0,0 +1,33 @@
+package Huffman;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class to map large files window by window, a single mapping can not be larger than 2 GB,
+ * so files are mapped in windows of WINDOW_SIZE bytes that are released when they are not referenced any more
+ */
+class HuffmanMapping {
+
+    // size of every mapped window
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+
+    /**
+     * map the window of the channel that starts at position
+     *
+     * @param channel  FileChannel to map
+     * @param mode     FileChannel.MapMode
+     * @param position file offset of the window
+     * @param end      file offset after the last byte to map
+     * @return MappedByteBuffer of at most WINDOW_SIZE bytes, in little endian order to read whole longs of content bits
+     * @throws IOException I/O
+     */
+    static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long end) throws IOException {
+        MappedByteBuffer window = channel.map(mode, position, Math.min(WINDOW_SIZE, end - position));
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        return window;
+    }
+}
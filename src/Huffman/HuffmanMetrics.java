@@ -0,0 +1,244 @@
+package Huffman;
+
+/**
+ * Class of the measurements of one encode or decode: the time of every phase, the bytes read and written,
+ * the number of byte values coded, the average code length and the entropy of the bytes, and how many times
+ * a buffer was written out.
+ *
+ * Time of a phase is summed over the threads that run it, so the phases of a block file coded on a pool
+ * can add up to more than the elapsed time. Blocks are recorded from several threads, so every method is synchronized
+ *
+ * @see HuffmanMetricsListener
+ */
+public class HuffmanMetrics {
+
+    /**
+     * the phases of encoding and decoding
+     */
+    public enum Phase {
+        // counting the frequencies of the byte values
+        HISTOGRAM,
+        // building the codes, or the decoding tables
+        TREE,
+        // writing or reading the code lengths header
+        HEADER,
+        // writing or reading the codes of the content
+        CODING
+    }
+
+    // true for a decode
+    private final boolean decode;
+
+    // the format version of the file, STORED when the encoder falls back to it
+    private int format;
+
+    // nanoseconds spent in every phase
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    // elapsed nanoseconds of the whole encode or decode
+    private long totalNanos;
+
+    // bytes read and written, the file sizes
+    private long bytesIn;
+    private long bytesOut;
+
+    // frequency of every byte value, known when encoding
+    private final long[] histogram = new long[256];
+    private boolean histogramKnown = false;
+
+    // number of bits of content codes, not counting padding
+    private long contentBits;
+
+    // number of bytes coded, the original length
+    private long symbolsCoded;
+
+    // number of times a buffer of coded or decoded bytes was written out
+    private long flushes;
+
+
+    /**
+     * @param decode true for a decode
+     * @param format the format version of the file
+     * @see HuffmanFormat
+     */
+    public HuffmanMetrics(boolean decode, int format) {
+        this.decode = decode;
+        this.format = format;
+    }
+
+
+    /**
+     * add the nanoseconds since start to a phase
+     *
+     * @param phase Phase
+     * @param start System.nanoTime() when the phase started
+     */
+    synchronized void time(Phase phase, long start) {
+        phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+    }
+
+    synchronized void setFormat(int format) {
+        this.format = format;
+    }
+
+    synchronized void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    synchronized void setBytes(long bytesIn, long bytesOut) {
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+    }
+
+    /**
+     * add the frequencies of coded bytes
+     *
+     * @param histogram long[256] frequency of every byte value
+     */
+    synchronized void addHistogram(long[] histogram) {
+        for (int b = 0; b < 256; b++)
+            this.histogram[b] += histogram[b];
+        histogramKnown = true;
+    }
+
+    /**
+     * add coded bytes
+     *
+     * @param symbols number of bytes coded
+     * @param bits    number of bits of their codes
+     */
+    synchronized void addContent(long symbols, long bits) {
+        symbolsCoded += symbols;
+        contentBits += bits;
+    }
+
+    synchronized void addFlushes(long flushes) {
+        this.flushes += flushes;
+    }
+
+
+    /**
+     * @return true for a decode, false for an encode
+     */
+    public boolean isDecode() {
+        return decode;
+    }
+
+    /**
+     * @return the format version of the file
+     */
+    public synchronized int getFormat() {
+        return format;
+    }
+
+    /**
+     * @param phase Phase
+     * @return nanoseconds spent in the phase, summed over threads
+     */
+    public synchronized long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return elapsed nanoseconds of the whole encode or decode
+     */
+    public synchronized long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return number of bytes read
+     */
+    public synchronized long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    public synchronized long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return number of bytes coded, the original length
+     */
+    public synchronized long getSymbolsCoded() {
+        return symbolsCoded;
+    }
+
+    /**
+     * @return number of bits of the content codes, not counting padding
+     */
+    public synchronized long getContentBits() {
+        return contentBits;
+    }
+
+    /**
+     * @return number of distinct byte values coded, -1 if the frequencies are not known
+     */
+    public synchronized int getDistinctSymbols() {
+        if (!histogramKnown)
+            return -1;
+        int distinct = 0;
+        for (long count : histogram) {
+            if (count > 0)
+                distinct++;
+        }
+        return distinct;
+    }
+
+    /**
+     * @return average number of bits per coded byte
+     */
+    public synchronized double getAverageCodeLength() {
+        return symbolsCoded == 0 ? 0 : (double) contentBits / symbolsCoded;
+    }
+
+    /**
+     * @return entropy of the byte frequencies in bits per byte, the shortest average any code of single bytes can have,
+     * NaN if the frequencies are not known
+     */
+    public synchronized double getEntropy() {
+        if (!histogramKnown)
+            return Double.NaN;
+
+        long total = 0;
+        for (long count : histogram)
+            total += count;
+
+        double entropy = 0;
+        for (long count : histogram) {
+            if (count > 0) {
+                double p = (double) count / total;
+                entropy -= p * Math.log(p) / Math.log(2);
+            }
+        }
+        return entropy;
+    }
+
+    /**
+     * @return number of times a buffer of coded or decoded bytes was written out
+     */
+    public synchronized long getFlushes() {
+        return flushes;
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(decode ? "decode" : "encode").append(" format ").append(format)
+                .append(": ").append(bytesIn).append(" bytes in, ").append(bytesOut).append(" bytes out, ")
+                .append(String.format("%.3f ms", totalNanos / 1e6)).append('\n');
+
+        for (Phase phase : Phase.values())
+            builder.append(String.format("  %-9s %10.3f ms%n", phase.name().toLowerCase(), phaseNanos[phase.ordinal()] / 1e6));
+
+        builder.append(String.format("  %d bytes coded, average code %.4f bits", symbolsCoded, getAverageCodeLength()));
+        if (histogramKnown)
+            builder.append(String.format(", entropy %.4f bits, %d byte values", getEntropy(), getDistinctSymbols()));
+        builder.append(", ").append(flushes).append(" flushes");
+        return builder.toString();
+    }
+}
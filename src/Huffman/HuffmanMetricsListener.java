@@ -0,0 +1,17 @@
+package Huffman;
+
+/**
+ * Listener given the metrics of every encode and decode when it completes,
+ * it may be called from several threads at once when files are coded in parallel
+ *
+ * @see HuffmanEncoder#setMetricsListener(HuffmanMetricsListener)
+ * @see HuffmanDecoder#setMetricsListener(HuffmanMetricsListener)
+ * @see HuffmanStats
+ */
+public interface HuffmanMetricsListener {
+
+    /**
+     * @param metrics HuffmanMetrics of the completed encode or decode
+     */
+    void completed(HuffmanMetrics metrics);
+}
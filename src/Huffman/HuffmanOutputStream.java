@@ -0,0 +1,168 @@
+package Huffman;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Output stream that compresses the bytes written to it into the block .huff format,
+ * a stream can not be read twice to build one tree, so bytes are buffered into blocks
+ * and every block is encoded with the tree of its own bytes when it is full.
+ * Only one block is held in memory
+ *
+ * @see HuffmanInputStream
+ * @see HuffmanBlock
+ */
+public class HuffmanOutputStream extends FilterOutputStream {
+
+    // size of the blocks when none is given
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    // the largest block size, a decoder holds a block of it in memory, so a file can not ask for more
+    public static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    // stream of the compressed data
+    private final DataOutputStream output;
+
+    // bytes of the block being filled
+    private final byte[] block;
+
+    // number of bytes in the block
+    private int blockLength = 0;
+
+    // offset and original length of every written block
+    private final HuffmanBlockIndex index = new HuffmanBlockIndex();
+
+    // number of bytes written to the compressed stream
+    private long position;
+
+    // true after the END byte and the index are written
+    private boolean finished = false;
+
+
+    /**
+     * @param out stream of the compressed data
+     * @throws IOException I/O
+     */
+    public HuffmanOutputStream(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param out       stream of the compressed data
+     * @param blockSize number of bytes of every block, from 1 to MAX_BLOCK_SIZE
+     * @throws IOException I/O
+     */
+    public HuffmanOutputStream(OutputStream out, int blockSize) throws IOException {
+        super(out);
+        if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE)
+            throw new IllegalArgumentException("blockSize must be between 1 and " + MAX_BLOCK_SIZE);
+
+        this.output = new DataOutputStream(out);
+        this.block = new byte[blockSize];
+
+        // write the magic and version and the block size in the head of the stream
+        output.write(HuffmanFormat.prefix(HuffmanFormat.BLOCKS));
+        output.writeInt(blockSize);
+        position = HuffmanFormat.PREFIX_LENGTH + 4;
+    }
+
+    /**
+     * a channel that compresses the bytes written to it, closing it finishes and closes out
+     *
+     * @param out       channel of the compressed data
+     * @param blockSize number of bytes of every block, from 1 to MAX_BLOCK_SIZE
+     * @return WritableByteChannel
+     * @throws IOException I/O
+     */
+    public static WritableByteChannel newChannel(WritableByteChannel out, int blockSize) throws IOException {
+        return Channels.newChannel(new HuffmanOutputStream(Channels.newOutputStream(out), blockSize));
+    }
+
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[blockLength++] = (byte) b;
+        if (blockLength == block.length)
+            writeBlock();
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        if (offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IndexOutOfBoundsException();
+
+        // fill the block, and encode it every time it is full
+        while (length > 0) {
+            int numberOfBytes = Math.min(length, block.length - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, numberOfBytes);
+            blockLength += numberOfBytes;
+            offset += numberOfBytes;
+            length -= numberOfBytes;
+
+            if (blockLength == block.length)
+                writeBlock();
+        }
+    }
+
+    /**
+     * encode the buffered bytes as a shorter block, so everything written so far can be decoded, then flush
+     *
+     * @throws IOException I/O
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!finished && blockLength > 0)
+            writeBlock();
+        output.flush();
+    }
+
+    /**
+     * write the last block, the END byte and the block index, without closing the underlying stream
+     *
+     * @throws IOException I/O
+     */
+    public void finish() throws IOException {
+        if (finished)
+            return;
+
+        if (blockLength > 0)
+            writeBlock();
+
+        output.writeByte(HuffmanBlock.END);
+        index.write(output, position + 1);
+        output.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+
+    /**
+     * encode the buffered bytes with their own tree and write the block record
+     */
+    private void writeBlock() throws IOException {
+        HuffmanBlock encoded = HuffmanBlock.encode(block, 0, blockLength);
+        index.add(position, encoded.originalLength);
+        encoded.write(output);
+        position += encoded.recordLength();
+        blockLength = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished)
+            throw new IOException("Stream finished");
+    }
+}
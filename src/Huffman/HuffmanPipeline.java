@@ -0,0 +1,375 @@
+package Huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Class of the reader and writer stages of a pipelined encode or decode: a thread reads the file ahead
+ * of the coder, and another one writes behind it, so the disk and the CPU work at the same time.
+ * the stages hand large chunks to the coder and take them back through a bounded ring of DEPTH chunks:
+ * a stage that gets ahead waits for a chunk to be given back, and the chunks are reused, not allocated again.
+ * the coder sees the stages as an InputStream and an OutputStream, so the coding code is the same with or without them
+ *
+ * @see HuffmanEncoder#setPipelined(boolean)
+ * @see HuffmanDecoder#setPipelined(boolean)
+ */
+class HuffmanPipeline {
+
+    // size of the chunks read and written
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    // the most chunks of a stage, read ahead or waiting to be written
+    static final int DEPTH = 4;
+
+    // marks the end of the chunks
+    private static final Chunk END = new Chunk(0);
+
+
+    /**
+     * bytes handed between the stages
+     */
+    private static class Chunk {
+
+        final byte[] bytes;
+
+        // number of bytes in use
+        int length;
+
+        Chunk(int size) {
+            bytes = new byte[size];
+        }
+    }
+
+
+    /**
+     * chunks of a stage: the full ones to hand over in order and the empty ones given back,
+     * made when they are first needed, at most DEPTH of them
+     */
+    private static class Ring {
+
+        // the full chunks, with room for END after all of them
+        final ArrayBlockingQueue<Chunk> full = new ArrayBlockingQueue<>(DEPTH + 1);
+
+        // the chunks given back
+        final ArrayBlockingQueue<Chunk> free = new ArrayBlockingQueue<>(DEPTH);
+
+        // number of chunks made
+        private int allocated = 0;
+
+        /**
+         * @return an empty chunk, waiting for one to be given back if all DEPTH are in use
+         */
+        Chunk take() throws InterruptedException {
+            Chunk chunk = free.poll();
+            if (chunk == null) {
+                if (allocated < DEPTH) {
+                    allocated++;
+                    return new Chunk(CHUNK_SIZE);
+                }
+                chunk = free.take();
+            }
+            chunk.length = 0;
+            return chunk;
+        }
+    }
+
+
+    /**
+     * wait for a stage thread to end, even if the waiting thread is interrupted, which is then kept
+     */
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+
+    /**
+     * the reader stage: a thread fills chunks from the source, the stream gives their bytes to the coder.
+     * the thread closes the source when it ends
+     */
+    static class Input extends InputStream {
+
+        private final Ring ring = new Ring();
+
+        // the thread that reads the source
+        private final Thread thread;
+
+        // why the reading stopped, before END, null if it did not fail
+        private volatile IOException failure;
+
+        // set when the stream is closed, the thread stops
+        private volatile boolean closed = false;
+
+        // the chunk being read by the coder, and the index of its next byte
+        private Chunk current;
+        private int position;
+
+        // END was taken
+        private boolean ended = false;
+
+
+        /**
+         * @param source InputStream of the file, read on the thread of the stage
+         */
+        Input(InputStream source) {
+            thread = new Thread(() -> readAll(source), "huffman-reader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * fill chunks until the source ends, fails or the stream is closed
+         */
+        private void readAll(InputStream source) {
+            try {
+                while (!closed) {
+                    Chunk chunk = ring.take();
+                    int numberOfBytes;
+                    while (chunk.length < CHUNK_SIZE
+                            && (numberOfBytes = source.read(chunk.bytes, chunk.length, CHUNK_SIZE - chunk.length)) != -1)
+                        chunk.length += numberOfBytes;
+
+                    if (chunk.length > 0)
+                        ring.full.put(chunk);
+                    if (chunk.length < CHUNK_SIZE)
+                        break;
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                // closed
+            } finally {
+                ring.full.offer(END);
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    if (failure == null)
+                        failure = e;
+                }
+            }
+        }
+
+        /**
+         * @return false at the end of the source
+         */
+        private boolean next() throws IOException {
+            if (current != null && position < current.length)
+                return true;
+            if (ended)
+                return false;
+
+            if (current != null)
+                ring.free.offer(current);
+            current = null;
+            HuffmanProgress.checkInterrupted();
+
+            Chunk chunk;
+            try {
+                chunk = ring.full.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Cancelled.");
+            }
+            if (chunk == END) {
+                ended = true;
+                if (failure != null)
+                    throw new IOException(failure.getMessage(), failure);
+                return false;
+            }
+            current = chunk;
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return next() ? current.bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+            if (!next())
+                return -1;
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current.bytes, position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : current.length - position;
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            thread.interrupt();
+            join(thread);
+        }
+    }
+
+
+    /**
+     * the writer stage: the coder fills chunks, a thread writes them to the target in order.
+     * the thread closes the target when it ends
+     */
+    static class Output extends OutputStream {
+
+        private final Ring ring = new Ring();
+
+        // the thread that writes the target
+        private final Thread thread;
+
+        // why the writing failed, null if it did not
+        private volatile IOException failure;
+
+        // the chunk being filled by the coder
+        private Chunk current;
+
+        private boolean closed = false;
+
+
+        /**
+         * @param target OutputStream of the file, written on the thread of the stage
+         */
+        Output(OutputStream target) {
+            thread = new Thread(() -> writeAll(target), "huffman-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * write chunks until END, after a failure the chunks are only given back so the coder does not wait
+         */
+        private void writeAll(OutputStream target) {
+            try {
+                while (true) {
+                    Chunk chunk = ring.full.take();
+                    if (chunk == END)
+                        break;
+                    if (failure == null) {
+                        try {
+                            target.write(chunk.bytes, 0, chunk.length);
+                        } catch (IOException e) {
+                            failure = e;
+                        }
+                    }
+                    ring.free.offer(chunk);
+                }
+            } catch (InterruptedException e) {
+                // the stream can not be closed, stop writing
+                if (failure == null)
+                    failure = new InterruptedIOException("Cancelled.");
+            } finally {
+                try {
+                    target.close();
+                } catch (IOException e) {
+                    if (failure == null)
+                        failure = e;
+                }
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            if (failure != null)
+                throw new IOException(failure.getMessage(), failure);
+        }
+
+        /**
+         * hand the current chunk to the writer
+         */
+        private void handOver() throws IOException {
+            checkFailure();
+            try {
+                ring.full.put(current);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Cancelled.");
+            }
+            current = null;
+        }
+
+        /**
+         * make sure there is a chunk with room
+         */
+        private void ensureChunk() throws IOException {
+            if (closed)
+                throw new IOException("Error:Stream closed.");
+            if (current != null)
+                return;
+            try {
+                current = ring.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Cancelled.");
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureChunk();
+            current.bytes[current.length++] = (byte) b;
+            if (current.length == CHUNK_SIZE)
+                handOver();
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensureChunk();
+                int count = Math.min(length, CHUNK_SIZE - current.length);
+                System.arraycopy(bytes, offset, current.bytes, current.length, count);
+                current.length += count;
+                offset += count;
+                length -= count;
+                if (current.length == CHUNK_SIZE)
+                    handOver();
+            }
+        }
+
+        /**
+         * the bytes written are handed to the writer, which writes them while the coder goes on
+         */
+        @Override
+        public void flush() throws IOException {
+            if (current != null && current.length > 0)
+                handOver();
+        }
+
+        /**
+         * hand over the last bytes, and wait for the writer to write them and close the target
+         *
+         * @throws IOException if a write failed
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            try {
+                flush();
+            } finally {
+                closed = true;
+                ring.full.offer(END);
+                join(thread);
+            }
+            checkFailure();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package Huffman;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that counts the bytes of the file an encode or decode went through, tells the listener,
+ * and stops the coding with an InterruptedIOException when its thread is interrupted, which is how it is cancelled
+ *
+ * @see HuffmanProgressListener
+ */
+class HuffmanProgress {
+
+    // told of every step, null for none
+    private final HuffmanProgressListener listener;
+
+    // size of the file
+    private final long total;
+
+    // bytes gone through, blocks add to it from the threads of a pool
+    private final AtomicLong done = new AtomicLong();
+
+
+    /**
+     * @param listener HuffmanProgressListener, null for none
+     * @param total    size of the file
+     */
+    HuffmanProgress(HuffmanProgressListener listener, long total) {
+        this.listener = listener;
+        this.total = total;
+    }
+
+    /**
+     * add bytes gone through, and stop if the coding thread is interrupted
+     *
+     * @param bytes number of bytes
+     * @throws InterruptedIOException if the thread is interrupted
+     */
+    void advance(long bytes) throws InterruptedIOException {
+        long bytesDone = done.addAndGet(bytes);
+        if (listener != null)
+            listener.progress(bytesDone, total);
+        checkInterrupted();
+    }
+
+    /**
+     * @throws InterruptedIOException if the thread is interrupted
+     */
+    static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted())
+            throw new InterruptedIOException("Cancelled.");
+    }
+
+    /**
+     * a stream that advances by every byte read from in
+     *
+     * @param in InputStream of the file
+     * @return InputStream
+     */
+    InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1)
+                    advance(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                int numberOfBytes = super.read(bytes, offset, length);
+                if (numberOfBytes > 0)
+                    advance(numberOfBytes);
+                return numberOfBytes;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                advance(skipped);
+                return skipped;
+            }
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package Huffman;
+
+/**
+ * Listener told how much of the file an encode or decode has gone through,
+ * it is called often on the coding thread, or on the threads of the pool when blocks are decoded in parallel,
+ * so it should return fast
+ *
+ * @see HuffmanEncoder#setProgressListener(HuffmanProgressListener)
+ * @see HuffmanDecoder#setProgressListener(HuffmanProgressListener)
+ */
+public interface HuffmanProgressListener {
+
+    /**
+     * @param bytesDone  number of bytes of the file read so far
+     * @param bytesTotal size of the file
+     */
+    void progress(long bytesDone, long bytesTotal);
+}
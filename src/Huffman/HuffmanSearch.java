@@ -0,0 +1,178 @@
+package Huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Class to find a pattern in the decoded bytes of a .huff file without writing them: the file is decoded into
+ * the matcher a buffer at a time, which keeps only its position in the pattern between the buffers, so a match
+ * that spans two buffers is found and nothing more than the buffer is held. the decoding stops at the limit of matches,
+ * so finding out whether a file holds the pattern decodes only up to the first one.
+ * the pattern is matched with the Knuth-Morris-Pratt failure table, every decoded byte is looked at once,
+ * and while no part of the pattern is matched the bytes are skipped to the next first byte of the pattern.
+ * matching the codes of the pattern in the coded bits is not done: a code may start on any bit and the code of
+ * the byte before the pattern is not known, so it would need a check for every bit offset, more work than decoding
+ * with the table
+ *
+ * @see HuffmanDecoder#decode(OutputStream)
+ */
+public class HuffmanSearch {
+
+    // the bytes searched for
+    private final byte[] pattern;
+
+    // for every length of the pattern matched, the length still matched when the next byte does not match
+    private final int[] failure;
+
+    // the most matches found in a file
+    private int limit = Integer.MAX_VALUE;
+
+    // the dictionaries of files encoded with one, null if there are none
+    private HuffmanDictionaryCache dictionaries;
+
+
+    /**
+     * @param pattern the bytes to search for, at least 1
+     */
+    public HuffmanSearch(byte[] pattern) {
+        if (pattern.length == 0)
+            throw new IllegalArgumentException("pattern must not be empty");
+        this.pattern = pattern.clone();
+
+        failure = new int[pattern.length + 1];
+        failure[0] = -1;
+        for (int i = 1, matched = 0; i < pattern.length; i++) {
+            while (matched >= 0 && pattern[i] != pattern[matched])
+                matched = failure[matched];
+            failure[i + 1] = ++matched;
+        }
+    }
+
+    /**
+     * @param limit the most matches found in a file, the decoding stops at it
+     */
+    public void setLimit(int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("limit must be at least 1");
+        this.limit = limit;
+    }
+
+    /**
+     * @param dictionaries HuffmanDictionaryCache of the dictionaries files may be encoded with
+     */
+    public void setDictionaries(HuffmanDictionaryCache dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+
+    /**
+     * find the pattern in the decoded bytes of a file, the matches may overlap
+     *
+     * @param file a .huff file of any format
+     * @return the offsets of the matches in the decoded bytes, in order, at most limit of them
+     * @throws IOException I/O, or if the file is not valid
+     */
+    public long[] search(File file) throws IOException {
+        Matcher matcher = new Matcher();
+        HuffmanDecoder decoder = new HuffmanDecoder(file, null);
+        decoder.setDictionaries(dictionaries);
+        try {
+            decoder.decode(matcher);
+        } catch (Stop e) {
+            // the limit was found
+        }
+        return Arrays.copyOf(matcher.matches, matcher.count);
+    }
+
+    /**
+     * @param file a .huff file of any format
+     * @return true if the decoded bytes hold the pattern, the file is decoded only up to the first match
+     * @throws IOException I/O, or if the file is not valid
+     */
+    public boolean contains(File file) throws IOException {
+        int limit = this.limit;
+        this.limit = 1;
+        try {
+            return search(file).length > 0;
+        } finally {
+            this.limit = limit;
+        }
+    }
+
+
+    /**
+     * thrown by the matcher to stop the decoding at the limit, it has no stack trace as it is not an error
+     */
+    private static class Stop extends IOException {
+
+        // it never leaves the search, so it is never serialized
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * the stream the file is decoded into, it matches the bytes and drops them
+     */
+    private class Matcher extends OutputStream {
+
+        // length of the pattern matched by the last bytes
+        private int matched = 0;
+
+        // offset of the next byte in the decoded bytes
+        private long offset = 0;
+
+        // the offsets of the matches, and their number
+        private long[] matches = new long[16];
+        private int count = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int from, int length) throws IOException {
+            byte[] pattern = HuffmanSearch.this.pattern;
+            int[] failure = HuffmanSearch.this.failure;
+            byte first = pattern[0];
+            int matched = this.matched;
+            int end = from + length;
+
+            for (int i = from; i < end; i++) {
+                // nothing matched, skip to the next first byte
+                if (matched == 0) {
+                    while (i < end && bytes[i] != first)
+                        i++;
+                    if (i == end)
+                        break;
+                }
+
+                while (matched >= 0 && bytes[i] != pattern[matched])
+                    matched = failure[matched];
+                matched++;
+
+                if (matched == pattern.length) {
+                    add(offset + i - from - pattern.length + 1);
+                    matched = failure[matched];
+                }
+            }
+
+            this.matched = matched;
+            offset += length;
+        }
+
+        private void add(long match) throws Stop {
+            if (count == matches.length)
+                matches = Arrays.copyOf(matches, count * 2);
+            matches[count++] = match;
+            if (count >= limit)
+                throw new Stop();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package Huffman;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class to read any range of the decoded bytes of a block .huff file without decoding the whole file:
+ * the block index at the end of the file gives the record of every block and its original length,
+ * so only the blocks that cover the range are read and decoded.
+ * the code tables of the blocks read last are kept, and so are the bytes of the block decoded last,
+ * so reading a file in small parts decodes every block once.
+ * one file can be read by several threads, a read is synchronized
+ *
+ * @see HuffmanBlockIndex
+ */
+public class HuffmanSeekableFile implements Closeable {
+
+    // number of block code tables kept
+    private static final int TABLE_CACHE = 64;
+
+    // the block file
+    private final FileChannel channel;
+
+    // the record offset and original length of every block
+    private final HuffmanBlockIndex index;
+
+    // the decoded offset of every block, and the decoded size of the file as the last one,
+    // in order for the binary search as the index has no length below 0
+    private final long[] starts;
+
+    // the code table of the blocks read last, least recently used first
+    private final LinkedHashMap<Integer, BlockTable> tables = new LinkedHashMap<Integer, BlockTable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, BlockTable> eldest) {
+            return size() > TABLE_CACHE;
+        }
+    };
+
+    // the block decoded last, the bytes decoded from its start, and their number
+    private int decodedBlock = -1;
+    private byte[] decoded;
+    private int decodedLength = 0;
+
+    // the array huffman blocks are decoded into, of the block size once a block is decoded,
+    // stored blocks are their own bodies
+    private byte[] buffer = new byte[0];
+
+
+    /**
+     * open a block file and read its index
+     *
+     * @param file the block .huff file
+     * @throws IOException I/O, or if it is not a block file or its index is not valid
+     */
+    public HuffmanSeekableFile(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if (channel.size() < HuffmanFormat.PREFIX_LENGTH || !Arrays.equals(
+                    HuffmanBlockIndex.readFully(channel, 0, HuffmanFormat.PREFIX_LENGTH).array(), HuffmanFormat.prefix(HuffmanFormat.BLOCKS)))
+                throw new IOException("Error:Only block files can be read at an offset.");
+
+            index = HuffmanBlockIndex.read(channel);
+            starts = new long[index.size() + 1];
+            for (int block = 0; block < index.size(); block++)
+                starts[block + 1] = starts[block] + index.originalLength(block);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * @return number of decoded bytes of the file
+     */
+    public long size() {
+        return starts[starts.length - 1];
+    }
+
+    /**
+     * decode a range of the decoded bytes
+     *
+     * @param offset offset of the first byte in the decoded file
+     * @param length number of bytes
+     * @return the bytes of the range
+     * @throws IOException I/O, or if the range is not in the file
+     */
+    public byte[] decodeRange(long offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > size())
+            throw new IOException("Error:Range " + offset + "+" + length + " is not in the file of " + size() + " bytes.");
+
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length)
+            done += read(offset + done, bytes, done, length - done);
+        return bytes;
+    }
+
+    /**
+     * read decoded bytes from the block that holds position, at most to the end of the block
+     *
+     * @param position offset in the decoded file
+     * @param out      array to write the bytes to
+     * @param offset   index of the first byte to write
+     * @param length   the most bytes to read
+     * @return number of bytes read, -1 if position is at the end of the file
+     * @throws IOException I/O, or if the block is not valid
+     */
+    public synchronized int read(long position, byte[] out, int offset, int length) throws IOException {
+        if (!channel.isOpen())
+            throw new ClosedChannelException();
+        if (position >= size())
+            return -1;
+        if (length == 0)
+            return 0;
+
+        // the last block that starts at or before position
+        int block = Arrays.binarySearch(starts, position);
+        if (block < 0)
+            block = -block - 2;
+        while (index.originalLength(block) == 0)
+            block++;
+
+        int from = (int) (position - starts[block]);
+        int count = Math.min(length, index.originalLength(block) - from);
+        byte[] bytes = decodeBlock(block, from + count);
+        System.arraycopy(bytes, from, out, offset, count);
+        return count;
+    }
+
+    /**
+     * decode a block until end, or take the bytes already decoded
+     *
+     * @param block index of the block
+     * @param end   number of bytes needed from the start of the block
+     * @return the decoded bytes, from the start of the block
+     */
+    private byte[] decodeBlock(int block, int end) throws IOException {
+        if (block == decodedBlock && end <= decodedLength)
+            return decoded;
+
+        HuffmanBlock record = HuffmanBlock.read(channel, index.recordOffset(block), index.blockSize());
+        if (record.originalLength != index.originalLength(block))
+            throw new IOException("Error:Invalid block in file.");
+
+        // a stored block is its own decoded bytes
+        if (record.type == HuffmanBlock.STORED) {
+            if (record.bodyLength != record.originalLength)
+                throw new IOException("Error:Invalid block in file.");
+            decodedBlock = block;
+            decoded = record.body;
+            decodedLength = record.originalLength;
+            return decoded;
+        }
+        if (record.type != HuffmanBlock.HUFFMAN)
+            throw new IOException("Error:Unknown block type " + record.type + ".");
+
+        BlockTable table = tables.get(block);
+        if (table == null) {
+            HuffmanCanonicalCode code = record.readCode();
+            table = new BlockTable(new HuffmanDecodingTable(code.getCodes(), code.getLengths()), code.headerLength());
+            tables.put(block, table);
+        }
+
+        // decode only as far as the range goes, the rest of the block may never be read,
+        // but a block read again further on is read on, so it is decoded whole
+        if (block == decodedBlock)
+            end = record.originalLength;
+        // HuffmanBlock.read checked that no record decodes to more than the block size
+        if (buffer.length < record.originalLength)
+            buffer = new byte[index.blockSize()];
+        decodedBlock = -1;
+        record.decode(buffer, 0, end, table.table, table.headerLength);
+        decodedBlock = block;
+        decoded = buffer;
+        decodedLength = end;
+        return decoded;
+    }
+
+    /**
+     * a channel over the decoded bytes, with its own position, reads are decoded from the blocks they cover.
+     * the channel can not be written, and closing it closes the file
+     *
+     * @return SeekableByteChannel at position 0
+     */
+    public SeekableByteChannel newChannel() {
+        return new SeekableByteChannel() {
+
+            // the position in the decoded file
+            private long position = 0;
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (!dst.hasRemaining())
+                    return 0;
+
+                int numberOfBytes;
+                if (dst.hasArray()) {
+                    numberOfBytes = HuffmanSeekableFile.this.read(position, dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                    if (numberOfBytes > 0)
+                        dst.position(dst.position() + numberOfBytes);
+                } else {
+                    byte[] bytes = new byte[Math.min(dst.remaining(), 64 * 1024)];
+                    numberOfBytes = HuffmanSeekableFile.this.read(position, bytes, 0, bytes.length);
+                    if (numberOfBytes > 0)
+                        dst.put(bytes, 0, numberOfBytes);
+                }
+                if (numberOfBytes > 0)
+                    position += numberOfBytes;
+                return numberOfBytes;
+            }
+
+            @Override
+            public int write(ByteBuffer src) {
+                throw new NonWritableChannelException();
+            }
+
+            @Override
+            public long position() {
+                return position;
+            }
+
+            @Override
+            public SeekableByteChannel position(long newPosition) {
+                if (newPosition < 0)
+                    throw new IllegalArgumentException("position must not be negative");
+                position = newPosition;
+                return this;
+            }
+
+            @Override
+            public long size() {
+                return HuffmanSeekableFile.this.size();
+            }
+
+            @Override
+            public SeekableByteChannel truncate(long size) {
+                throw new NonWritableChannelException();
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                HuffmanSeekableFile.this.close();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    /**
+     * the code table of a block, and where its content starts in the body
+     */
+    private static class BlockTable {
+
+        final HuffmanDecodingTable table;
+
+        final int headerLength;
+
+        BlockTable(HuffmanDecodingTable table, int headerLength) {
+            this.table = table;
+            this.headerLength = headerLength;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package Huffman;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener that adds up the metrics of every encode and decode, registered as the MBean
+ * Huffman:type=HuffmanStats so the counters can be read with JMX tools
+ *
+ * @see HuffmanMetrics
+ */
+public class HuffmanStats implements HuffmanStatsMBean, HuffmanMetricsListener {
+
+    // the name of the registered MBean
+    public static final String OBJECT_NAME = "Huffman:type=HuffmanStats";
+
+    // the registered instance
+    private static HuffmanStats registered;
+
+    // number of completed encodes and decodes
+    private final LongAdder encodes = new LongAdder();
+    private final LongAdder decodes = new LongAdder();
+
+    // bytes read and written, bytes coded and the bits of their codes
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder bytesCoded = new LongAdder();
+    private final LongAdder contentBits = new LongAdder();
+
+    // entropy bound in bits of the files whose frequencies are known, and their bytes coded
+    private final DoubleAdder entropyBits = new DoubleAdder();
+    private final LongAdder entropyBytes = new LongAdder();
+
+    // number of buffers written out
+    private final LongAdder flushes = new LongAdder();
+
+    // nanoseconds of every phase, and of whole encodes and decodes
+    private final LongAdder[] phaseNanos = new LongAdder[HuffmanMetrics.Phase.values().length];
+    private final LongAdder totalNanos = new LongAdder();
+
+
+    public HuffmanStats() {
+        for (int i = 0; i < phaseNanos.length; i++)
+            phaseNanos[i] = new LongAdder();
+    }
+
+    /**
+     * the instance registered in the platform MBean server, registered the first time
+     *
+     * @return HuffmanStats
+     * @throws JMException if it can not be registered
+     */
+    public static synchronized HuffmanStats register() throws JMException {
+        if (registered == null) {
+            HuffmanStats stats = new HuffmanStats();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.registerMBean(stats, new ObjectName(OBJECT_NAME));
+            } catch (InstanceAlreadyExistsException e) {
+                // registered by another class loader, this one counts for this class loader only
+            }
+            registered = stats;
+        }
+        return registered;
+    }
+
+
+    @Override
+    public void completed(HuffmanMetrics metrics) {
+        (metrics.isDecode() ? decodes : encodes).increment();
+        bytesIn.add(metrics.getBytesIn());
+        bytesOut.add(metrics.getBytesOut());
+        bytesCoded.add(metrics.getSymbolsCoded());
+        contentBits.add(metrics.getContentBits());
+        flushes.add(metrics.getFlushes());
+        if (metrics.getDistinctSymbols() >= 0) {
+            entropyBits.add(metrics.getEntropy() * metrics.getSymbolsCoded());
+            entropyBytes.add(metrics.getSymbolsCoded());
+        }
+        for (HuffmanMetrics.Phase phase : HuffmanMetrics.Phase.values())
+            phaseNanos[phase.ordinal()].add(metrics.getPhaseNanos(phase));
+        totalNanos.add(metrics.getTotalNanos());
+    }
+
+    @Override
+    public long getEncodes() {
+        return encodes.sum();
+    }
+
+    @Override
+    public long getDecodes() {
+        return decodes.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getBytesCoded() {
+        return bytesCoded.sum();
+    }
+
+    @Override
+    public long getContentBits() {
+        return contentBits.sum();
+    }
+
+    @Override
+    public double getAverageCodeLength() {
+        long coded = bytesCoded.sum();
+        return coded == 0 ? 0 : (double) contentBits.sum() / coded;
+    }
+
+    @Override
+    public double getEntropy() {
+        long bytes = entropyBytes.sum();
+        return bytes == 0 ? 0 : entropyBits.sum() / bytes;
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    @Override
+    public long getHistogramNanos() {
+        return phaseNanos[HuffmanMetrics.Phase.HISTOGRAM.ordinal()].sum();
+    }
+
+    @Override
+    public long getTreeNanos() {
+        return phaseNanos[HuffmanMetrics.Phase.TREE.ordinal()].sum();
+    }
+
+    @Override
+    public long getHeaderNanos() {
+        return phaseNanos[HuffmanMetrics.Phase.HEADER.ordinal()].sum();
+    }
+
+    @Override
+    public long getCodingNanos() {
+        return phaseNanos[HuffmanMetrics.Phase.CODING.ordinal()].sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public void reset() {
+        encodes.reset();
+        decodes.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+        bytesCoded.reset();
+        contentBits.reset();
+        flushes.reset();
+        entropyBits.reset();
+        entropyBytes.reset();
+        for (LongAdder nanos : phaseNanos)
+            nanos.reset();
+        totalNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d encodes, %d decodes, %d bytes in, %d bytes out, average code %.4f bits, entropy %.4f bits, %d flushes%n"
+                        + "histogram %.3f ms, tree %.3f ms, header %.3f ms, coding %.3f ms, total %.3f ms",
+                getEncodes(), getDecodes(), getBytesIn(), getBytesOut(), getAverageCodeLength(), getEntropy(), getFlushes(),
+                getHistogramNanos() / 1e6, getTreeNanos() / 1e6, getHeaderNanos() / 1e6, getCodingNanos() / 1e6,
+                getTotalNanos() / 1e6);
+    }
+}
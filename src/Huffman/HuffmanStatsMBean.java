@@ -0,0 +1,39 @@
+package Huffman;
+
+/**
+ * JMX view of the cumulative counters of HuffmanStats
+ *
+ * @see HuffmanStats
+ */
+public interface HuffmanStatsMBean {
+
+    long getEncodes();
+
+    long getDecodes();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getBytesCoded();
+
+    long getContentBits();
+
+    double getAverageCodeLength();
+
+    double getEntropy();
+
+    long getFlushes();
+
+    long getHistogramNanos();
+
+    long getTreeNanos();
+
+    long getHeaderNanos();
+
+    long getCodingNanos();
+
+    long getTotalNanos();
+
+    void reset();
+}
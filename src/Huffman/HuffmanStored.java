@@ -0,0 +1,64 @@
+package Huffman;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Class of the stored fallback: when the codes would not make the data smaller, as with data that is already
+ * compressed, the bytes are written as they are. the size of the codes is known from the frequencies before
+ * coding, so the fallback costs no coding, and stored bytes are copied between the channels by transferTo,
+ * which the system can do without copying them through the Java heap
+ *
+ * @see HuffmanFormat#STORED
+ * @see HuffmanBlock#STORED
+ */
+class HuffmanStored {
+
+    // number of bytes copied between progress reports
+    private static final long STEP = 8 * 1024 * 1024;
+
+
+    /**
+     * @param code           the code of the data
+     * @param histogram      long[256] frequency of every byte value of the data
+     * @param headerLength   number of bytes the coded data has before its content, with the code lengths
+     * @param originalLength number of bytes of the data
+     * @return true if the coded data would not be smaller than the data
+     */
+    static boolean isIncompressible(HuffmanCanonicalCode code, long[] histogram, long headerLength, long originalLength) {
+        return isIncompressible(code.encodedBits(histogram), headerLength, originalLength);
+    }
+
+    /**
+     * @param contentBits    number of bits of the coded content
+     * @param headerLength   number of bytes the coded data has before its content, after the original length
+     * @param originalLength number of bytes of the data
+     * @return true if the coded data would not be smaller than the data
+     */
+    static boolean isIncompressible(long contentBits, long headerLength, long originalLength) {
+        return headerLength + (contentBits + 7) / 8 >= originalLength;
+    }
+
+    /**
+     * copy bytes of a file channel to a channel, a step at a time
+     *
+     * @param source   FileChannel to read from, its position is not used
+     * @param position file offset of the first byte
+     * @param count    number of bytes
+     * @param target   channel to write to, at its position
+     * @param progress HuffmanProgress advanced by every step
+     * @throws IOException I/O, or if the file ends before count bytes
+     */
+    static void copy(FileChannel source, long position, long count, WritableByteChannel target,
+                     HuffmanProgress progress) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long copied = source.transferTo(position, Math.min(STEP, end - position), target);
+            if (copied <= 0)
+                throw new IOException("Error:Unexpected end of file.");
+            position += copied;
+            progress.advance(copied);
+        }
+    }
+}
@@ -1,63 +1,290 @@
 package Huffman;
 
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.HashMap;
 
 /**
  * Created by jihadbadran on 10/21/17.
  *
+ * the tree is held in parallel int arrays indexed by node, not in node objects:
+ * the children of every node, -1 for a leaf, and the byte value of every leaf.
+ * a built tree has its leaves first in order of frequency, then its inner nodes in the order they were made,
+ * so the root is the last node
  */
 
 public class HuffmanTree {
 
-    private HuffmanNode root = new HuffmanNode();
+    // left (bit 0) and right (bit 1) child of every node, -1 for a leaf
+    private final int[] left;
+    private final int[] right;
 
-    public HuffmanNode getRoot() {
+    // byte value of every leaf, unsigned
+    private final int[] symbols;
+
+    // number of nodes, and the index of the root
+    private int nodes;
+    private int root;
+
+
+    /**
+     * @param capacity the most nodes of the tree
+     */
+    private HuffmanTree(int capacity) {
+        left = new int[capacity];
+        right = new int[capacity];
+        symbols = new int[capacity];
+    }
+
+    /**
+     * @return index of the root node
+     */
+    public int getRoot() {
         return root;
     }
 
-    public void setRoot(HuffmanNode root) {
-        this.root = root;
+    /**
+     * @return number of nodes
+     */
+    public int size() {
+        return nodes;
+    }
+
+    /**
+     * @param node index of a node
+     * @return index of its left (bit 0) child, -1 for a leaf
+     */
+    public int getLeft(int node) {
+        return left[node];
+    }
+
+    /**
+     * @param node index of a node
+     * @return index of its right (bit 1) child, -1 for a leaf
+     */
+    public int getRight(int node) {
+        return right[node];
+    }
+
+    /**
+     * @param node index of a node
+     * @return true if the node is a leaf
+     */
+    public boolean isLeaf(int node) {
+        return left[node] < 0;
     }
 
     /**
+     * @param node index of a leaf
+     * @return its byte value, unsigned
+     */
+    public int getSymbol(int node) {
+        return symbols[node];
+    }
+
+    /**
+     * build the huffman tree of the byte frequencies with two queues in linear time:
+     * the leaves sorted by frequency are one queue, and the inner nodes are the other, as every one is heavier
+     * than the one made before it. the two lightest of both queues are merged, a leaf first when the weights tie,
+     * and the leaves are sorted by frequency then by byte value, so the same frequencies always give the same tree
      *
+     * @param histogram long[256] frequency of every byte value, indexed by the unsigned byte
+     * @return HuffmanTree, null if there are no bytes
+     */
+    public static HuffmanTree build(long[] histogram) {
+
+        // the byte values used, sorted by frequency then byte value
+        int[] sorted = new int[256];
+        int leaves = 0;
+        for (int b = 0; b < 256; b++) {
+            if (histogram[b] > 0) {
+                int i = leaves++;
+                for (; i > 0 && histogram[sorted[i - 1]] > histogram[b]; i--)
+                    sorted[i] = sorted[i - 1];
+                sorted[i] = b;
+            }
+        }
+
+        if (leaves == 0)
+            return null;
+
+        HuffmanTree tree = new HuffmanTree(2 * leaves - 1);
+        long[] weights = new long[2 * leaves - 1];
+        for (int i = 0; i < leaves; i++) {
+            tree.left[i] = -1;
+            tree.right[i] = -1;
+            tree.symbols[i] = sorted[i];
+            weights[i] = histogram[sorted[i]];
+        }
+        tree.nodes = leaves;
+
+        // next leaf and next inner node to take, the inner nodes are made after the leaves
+        int leaf = 0;
+        int inner = leaves;
+        while (tree.nodes < 2 * leaves - 1) {
+            int first = leaf < leaves && (inner == tree.nodes || weights[leaf] <= weights[inner]) ? leaf++ : inner++;
+            int second = leaf < leaves && (inner == tree.nodes || weights[leaf] <= weights[inner]) ? leaf++ : inner++;
+
+            int node = tree.nodes++;
+            tree.left[node] = first;
+            tree.right[node] = second;
+            weights[node] = weights[first] + weights[second];
+        }
+
+        // the last node made is the root
+        tree.root = tree.nodes - 1;
+        return tree;
+    }
+
+    /**
+     * read the tree of a legacy header: pre-order bits, 0 for an inner node, then its left and right subtrees,
+     * 1 for a leaf followed by the 8 bits of its byte value, the high bit first
      *
-     * @param node
-     * @param code
-     * @param map
+     * @param bits   BitSet of the header
+     * @param length number of bits of the tree
+     * @return HuffmanTree
+     * @throws IOException if the bits are not a whole tree
      */
-    private void makeMap(HuffmanNode node, String code, HashMap<Byte, String> map){
+    static HuffmanTree fromPreorder(BitSet bits, int length) throws IOException {
+        // every 0 bit makes two nodes
+        HuffmanTree tree = new HuffmanTree(2 * length + 1);
+
+        // the nodes whose subtree comes next, as indices
+        int[] stack = new int[length + 2];
+        int top = 0;
+        tree.nodes = 1;
+        tree.root = 0;
+        stack[top++] = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (top == 0)
+                throw new IOException("Error:Invalid tree in file.");
+            int node = stack[--top];
 
-        if(node == null) return;
-        if(node.isLeaf() ){
-            map.put(node.getC(), code);
-        } else{
-            makeMap(node.getLeft(), code + "0", map);
-            makeMap(node.getRight(), code + "1", map);
+            // an inner node, its left subtree is read first
+            if (!bits.get(i)) {
+                tree.left[node] = tree.nodes++;
+                tree.right[node] = tree.nodes++;
+                stack[top++] = tree.right[node];
+                stack[top++] = tree.left[node];
+            } else {
+                tree.left[node] = -1;
+                tree.right[node] = -1;
+                if (i + 8 >= length)
+                    throw new IOException("Error:Invalid tree in file.");
+                int symbol = 0;
+                for (int bit = i + 1; bit < i + 9; bit++)
+                    symbol = (symbol << 1) | (bits.get(bit) ? 1 : 0);
+                tree.symbols[node] = symbol;
+                i += 8;
+            }
         }
 
+        // the header ends before every node was read
+        if (top > 0)
+            throw new IOException("Error:Invalid tree in file.");
+        return tree;
     }
 
+
     /**
      *
      * @return map
      */
     public HashMap<Byte, String> makeMap(){
         HashMap<Byte, String> map = new HashMap<>();
-        makeMap(root, "", map);
+
+        // the path of every node as a string of bits, walked from the root
+        String[] paths = new String[nodes];
+        int[] stack = new int[nodes];
+        int top = 0;
+        paths[root] = "";
+        stack[top++] = root;
+
+        while (top > 0) {
+            int node = stack[--top];
+            if (isLeaf(node)) {
+                map.put((byte) symbols[node], paths[node]);
+                continue;
+            }
+            paths[left[node]] = paths[node] + "0";
+            paths[right[node]] = paths[node] + "1";
+            stack[top++] = right[node];
+            stack[top++] = left[node];
+        }
         return map;
     }
 
-    private void print(HuffmanNode node){
-        if(node == null) return;
-        if(node.isLeaf())
-            System.out.println((char)node.getC());
-        else{
-            print(node.getLeft());
-            print(node.getRight());
+    /**
+     * @return the most edges from the root to a leaf, 0 for a tree of one leaf
+     */
+    public int getDepth() {
+        int[] depths = new int[nodes];
+        int[] stack = new int[nodes];
+        int top = 0;
+        int depth = 0;
+        stack[top++] = root;
+
+        while (top > 0) {
+            int node = stack[--top];
+            depth = Math.max(depth, depths[node]);
+            if (isLeaf(node))
+                continue;
+            depths[left[node]] = depths[node] + 1;
+            depths[right[node]] = depths[node] + 1;
+            stack[top++] = right[node];
+            stack[top++] = left[node];
+        }
+        return depth;
+    }
+
+    /**
+     * fill the code and length arrays, both of size 256, the first bit of a code (left = 0, right = 1)
+     * is bit 0 of its long. the nodes are walked from the root with a stack of indices, not by recursion
+     *
+     * @param codes   long[256]
+     * @param lengths int[256] code lengths of the leaves, 0 for byte values not in the tree
+     * @throws IllegalStateException if the tree is deeper than 64, its codes do not fit in a long
+     */
+    public void makeCodes(long[] codes, int[] lengths){
+        long[] nodeCodes = new long[nodes];
+        int[] depths = new int[nodes];
+        int[] stack = new int[nodes];
+        int top = 0;
+        stack[top++] = root;
+
+        while (top > 0) {
+            int node = stack[--top];
+            if (isLeaf(node)) {
+                codes[symbols[node]] = nodeCodes[node];
+                lengths[symbols[node]] = depths[node];
+                continue;
+            }
+
+            int depth = depths[node];
+            if (depth >= 64)
+                throw new IllegalStateException("tree deeper than 64, its codes do not fit in a long");
+            nodeCodes[left[node]] = nodeCodes[node];
+            nodeCodes[right[node]] = nodeCodes[node] | (1L << depth);
+            depths[left[node]] = depth + 1;
+            depths[right[node]] = depth + 1;
+            stack[top++] = right[node];
+            stack[top++] = left[node];
         }
     }
+
     public void print(){
-        print(this.root);
+        int[] stack = new int[nodes];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (isLeaf(node)) {
+                System.out.println((char) (byte) symbols[node]);
+            } else {
+                stack[top++] = right[node];
+                stack[top++] = left[node];
+            }
+        }
     }
-}
\ No newline at end of file
+}